@@ -0,0 +1,75 @@
+package structured_java;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keyboard navigation of the class outline: setting up the focus grid after a build and moving through every row and
+ * column of it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyboardFocusInfoBenchmark {
+
+    // The number of members in the class, split between variables and methods.
+    @Param({"10", "100", "1000", "10000"})
+    public int classSize;
+
+    private static final int COLUMN_COUNT = 6;
+
+    private int[] rowCounts;
+
+
+    @Setup
+    public void setUp() {
+        // Variables and methods, each followed by the row for adding a new one, then enums and inner classes.
+        rowCounts = new int[]{classSize / 2 + 1, classSize / 2 + 1, 3, 3};
+    }
+
+
+    @Benchmark
+    public int setRowCounts() {
+        KeyboardFocusInfo keyboardFocusInfo = new KeyboardFocusInfo();
+        keyboardFocusInfo.setFocusedRow(classSize);
+        keyboardFocusInfo.setRowCounts(rowCounts);
+        return keyboardFocusInfo.getFocusedRow();
+    }
+
+
+    /**
+     * Walk down every row of every area and across the columns of each row.
+     */
+    @Benchmark
+    public int navigateAllRows() {
+        KeyboardFocusInfo keyboardFocusInfo = new KeyboardFocusInfo();
+        keyboardFocusInfo.setRowCounts(rowCounts);
+        int moves = 0;
+        do {
+            keyboardFocusInfo.setFocusedRow(0);
+            do {
+                keyboardFocusInfo.setFocusedColumn(0);
+                keyboardFocusInfo.setColumnCount(COLUMN_COUNT);
+                while (keyboardFocusInfo.moveColumn(1)) {
+                    moves++;
+                }
+                moves++;
+            } while (keyboardFocusInfo.moveRow(1));
+        } while (keyboardFocusInfo.moveArea(1));
+        return moves;
+    }
+}
@@ -0,0 +1,54 @@
+package structured_java;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SourceGenerator} against the String concatenation it replaced, on the same method bodies. The concatenation
+ * is quadratic in the body length, so the largest size is left out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LegacySourceConcatenationBenchmark {
+
+    // The number of lines in a method body.
+    @Param({"10", "100", "1000"})
+    public int methodSize;
+
+    private String methodAreaText;
+
+
+    @Setup
+    public void setUp() {
+        methodAreaText = SyntheticSource.methodAreaText(methodSize);
+    }
+
+
+    @Benchmark
+    public String generatorMethod() {
+        return new SourceGenerator()
+            .method(SyntheticSource.MODIFIERS, "void", "generated", SyntheticSource.PARAMETERS, methodAreaText, 8)
+            .toString();
+    }
+
+
+    @Benchmark
+    public String legacyMethod() {
+        return LegacySourceConcatenation.method(SyntheticSource.MODIFIERS, "void", "generated", SyntheticSource.PARAMETERS, methodAreaText, 8);
+    }
+}
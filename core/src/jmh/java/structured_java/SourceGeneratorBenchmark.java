@@ -0,0 +1,74 @@
+package structured_java;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The source generation done on every sync of the method text area (convertMethodAreaTextToSourceText), when a method
+ * is saved and when a variable is added (getNewVariableSourceText).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourceGeneratorBenchmark {
+
+    // The number of lines in a method body.
+    @Param({"10", "100", "1000", "10000"})
+    public int methodSize;
+
+    // The number of members in a class.
+    @Param({"10", "100", "1000"})
+    public int classSize;
+
+    private String methodAreaText;
+    private List<String> memberNames;
+
+
+    @Setup
+    public void setUp() {
+        methodAreaText = SyntheticSource.methodAreaText(methodSize);
+        memberNames = SyntheticSource.memberNames(classSize);
+    }
+
+
+    @Benchmark
+    public String methodBody() {
+        return new SourceGenerator(methodAreaText.length() * 2).body(methodAreaText, 8).toString();
+    }
+
+
+    @Benchmark
+    public String method() {
+        return new SourceGenerator()
+            .method(SyntheticSource.MODIFIERS, "void", "generated", SyntheticSource.PARAMETERS, methodAreaText, 8)
+            .toString();
+    }
+
+
+    /**
+     * Generate a variable declaration for every member of a class.
+     */
+    @Benchmark
+    public int variables() {
+        int length = 0;
+        for (String name : memberNames) {
+            length += new SourceGenerator().variable(SyntheticSource.MODIFIERS, "String", name, "\"value\"").toString().length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,66 @@
+package structured_java;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The source text scanners and the indentation stripping done when a method editing scene is built
+ * (buildSourcePartsOfMethodEditingScene).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourceTextBenchmark {
+
+    // The number of lines in a method body.
+    @Param({"10", "100", "1000", "10000"})
+    public int methodSize;
+
+    private String methodText;
+    private String bodyText;
+
+
+    @Setup
+    public void setUp() {
+        methodText = SyntheticSource.methodText(methodSize);
+        bodyText = SyntheticSource.bodyText(methodSize);
+    }
+
+
+    /**
+     * Turn the body of a method into the text shown in the method text area.
+     */
+    @Benchmark
+    public String stripIndent() {
+        List<String> lines = SourceText.getBodyLines(bodyText);
+        int indentAmount = lines.isEmpty() ? 0 : Math.max(0, SourceText.indexOfFirstNonWhitespace(lines.get(0)));
+        return SourceText.stripIndent(lines, indentAmount);
+    }
+
+
+    @Benchmark
+    public int indexOfFirstCodeBrace() {
+        return SourceText.indexOfFirstCodeBrace(methodText, 0, methodText.length());
+    }
+
+
+    @Benchmark
+    public int indexOfPattern() {
+        return SourceText.indexOf("\\{\\s*\\n", methodText);
+    }
+}
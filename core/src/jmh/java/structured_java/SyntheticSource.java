@@ -0,0 +1,59 @@
+package structured_java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates Java source of a given size for the benchmarks.
+ */
+class SyntheticSource {
+
+    static final List<String> MODIFIERS = Arrays.asList("private", "static");
+    static final List<String> PARAMETERS = Arrays.asList("String name", "int count", "List<String> values");
+
+
+    /**
+     * @return The text of a method body as it is shown in the method text area, without braces or indent.
+     */
+    static String methodAreaText(int lineCount) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lineCount; i++) {
+            // Every fourth line is nested one level deeper, like the inside of an if statement.
+            if (i % 4 == 3) {
+                builder.append("    ");
+            }
+            builder.append("values.add(name + \"_").append(i).append("\" + count);\n");
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * @return The text of a whole method as it is in a class, with its header, braces and indent.
+     */
+    static String methodText(int lineCount) {
+        return new SourceGenerator()
+            .append("    /* A comment with a { brace */ ")
+            .method(MODIFIERS, "void", "generated", PARAMETERS, methodAreaText(lineCount), 8)
+            .toString();
+    }
+
+
+    /**
+     * @return The text of a method body with its braces, as it is read from the PSI.
+     */
+    static String bodyText(int lineCount) {
+        String methodText = methodText(lineCount);
+        return methodText.substring(SourceText.indexOfFirstCodeBrace(methodText, 0, methodText.length()));
+    }
+
+
+    static List<String> memberNames(int memberCount) {
+        List<String> names = new ArrayList<>(memberCount);
+        for (int i = 0; i < memberCount; i++) {
+            names.add("member" + i);
+        }
+        return names;
+    }
+}
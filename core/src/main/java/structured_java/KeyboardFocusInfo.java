@@ -0,0 +1,127 @@
+package structured_java;
+
+public class KeyboardFocusInfo {
+
+    enum FocusLevel {
+        AREA,
+        ROW,
+        COLUMN
+    }
+
+    private int focusedRow = 0;
+    private int focusedColumn = 0;
+    private FocusLevel focusLevel;
+    private int focusedAreaIndex = 0;
+
+    // The focus grid: the number of rows in each area and the number of focusable columns in the focused row.
+    private int[] rowCounts = new int[0];
+    private int columnCount = 0;
+
+    public KeyboardFocusInfo() {
+        focusLevel = FocusLevel.AREA;
+    }
+
+
+    /**
+     * Set the number of rows in each area, e.g. after the outline is rebuilt. The focus is moved back into the grid
+     * if it is now outside of it.
+     */
+    public void setRowCounts(int[] rowCounts) {
+        this.rowCounts = rowCounts.clone();
+        if (rowCounts.length == 0) {
+            focusedAreaIndex = 0;
+            focusedRow = 0;
+            return;
+        }
+        focusedAreaIndex = clamp(focusedAreaIndex, rowCounts.length);
+        focusedRow = clamp(focusedRow, rowCounts[focusedAreaIndex]);
+    }
+
+    public int getRowCount(int areaIndex) {
+        return rowCounts[areaIndex];
+    }
+
+    /**
+     * Set the number of focusable columns in the focused row. Labels and hidden components are not counted.
+     */
+    public void setColumnCount(int columnCount) {
+        this.columnCount = columnCount;
+        focusedColumn = clamp(focusedColumn, columnCount);
+    }
+
+
+    /**
+     * Move the focus to another area if there is one at the new index.
+     * @return Whether the focus moved.
+     */
+    public boolean moveArea(int indexIncrement) {
+        int newIndex = focusedAreaIndex + indexIncrement;
+        if (newIndex < 0 || newIndex >= rowCounts.length) {
+            return false;
+        }
+        focusedAreaIndex = newIndex;
+        return true;
+    }
+
+    /**
+     * Move the focus to another row of the focused area if there is one at the new index.
+     * @return Whether the focus moved.
+     */
+    public boolean moveRow(int indexIncrement) {
+        int newIndex = focusedRow + indexIncrement;
+        if (focusedAreaIndex >= rowCounts.length || newIndex < 0 || newIndex >= rowCounts[focusedAreaIndex]) {
+            return false;
+        }
+        focusedRow = newIndex;
+        return true;
+    }
+
+    /**
+     * Move the focus to another focusable column of the focused row if there is one at the new index.
+     * @return Whether the focus moved.
+     */
+    public boolean moveColumn(int indexIncrement) {
+        int newIndex = focusedColumn + indexIncrement;
+        if (newIndex < 0 || newIndex >= columnCount) {
+            return false;
+        }
+        focusedColumn = newIndex;
+        return true;
+    }
+
+    private static int clamp(int index, int size) {
+        return Math.max(0, Math.min(index, size - 1));
+    }
+
+    public int getFocusedRow() {
+        return focusedRow;
+    }
+
+    public void setFocusedRow(int focusedRow) {
+        this.focusedRow = focusedRow;
+    }
+
+    public int getFocusedColumn() {
+        return focusedColumn;
+    }
+
+    public void setFocusedColumn(int focusedColumn) {
+        this.focusedColumn = focusedColumn;
+    }
+
+    public FocusLevel getFocusLevel() {
+        return focusLevel;
+    }
+
+    public void setFocusLevel(FocusLevel focusLevel) {
+        this.focusLevel = focusLevel;
+    }
+
+    public int getFocusedAreaIndex() {
+        return focusedAreaIndex;
+    }
+
+    public void setFocusedAreaIndex(int focusedAreaIndex) {
+        this.focusedAreaIndex = focusedAreaIndex;
+    }
+}
@@ -0,0 +1,164 @@
+package structured_java;
+
+import java.util.List;
+
+/**
+ * Builds Java source text for methods and variables into one buffer, so generating the source of a method takes time
+ * linear in the length of its body.
+ */
+public class SourceGenerator {
+
+    // The indent of the closing brace of a method body.
+    public static final int CLOSING_BRACE_INDENT_AMOUNT = 4;
+
+    private static final int MAX_CACHED_INDENT_AMOUNT = 32;
+    private static final String[] INDENTS = new String[MAX_CACHED_INDENT_AMOUNT + 1];
+    static {
+        StringBuilder indent = new StringBuilder();
+        for (int i = 0; i <= MAX_CACHED_INDENT_AMOUNT; i++) {
+            INDENTS[i] = indent.toString();
+            indent.append(' ');
+        }
+    }
+
+    private final StringBuilder builder;
+
+
+    public SourceGenerator() {
+        this(64);
+    }
+
+
+    public SourceGenerator(int expectedLength) {
+        builder = new StringBuilder(expectedLength);
+    }
+
+
+    /**
+     * @return A string of the given number of spaces.
+     */
+    public static String getIndent(int indentAmount) {
+        if (indentAmount <= MAX_CACHED_INDENT_AMOUNT) {
+            return INDENTS[indentAmount];
+        }
+        StringBuilder indent = new StringBuilder(indentAmount);
+        for (int i = 0; i < indentAmount; i++) {
+            indent.append(' ');
+        }
+        return indent.toString();
+    }
+
+
+    public SourceGenerator append(String text) {
+        builder.append(text);
+        return this;
+    }
+
+
+    /**
+     * Append every modifier followed by a space.
+     */
+    public SourceGenerator modifiers(List<String> modifiers) {
+        for (String modifier : modifiers) {
+            builder.append(modifier).append(' ');
+        }
+        return this;
+    }
+
+
+    /**
+     * Append the parameters separated by commas and surrounded by parentheses.
+     */
+    public SourceGenerator parameters(List<String> parameters) {
+        builder.append('(');
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(parameters.get(i));
+        }
+        builder.append(')');
+        return this;
+    }
+
+
+    /**
+     * Append the text of a method body without its braces. Every line is indented by the indent amount, and the body
+     * ends with the indent of the closing brace. Trailing empty lines are dropped.
+     */
+    public SourceGenerator body(String bodyText, int indentAmount) {
+        String indent = getIndent(indentAmount);
+        builder.ensureCapacity(builder.length() + bodyText.length() + (indentAmount + 1) * (countLines(bodyText) + 1));
+        builder.append('\n');
+
+        // Trailing empty lines are dropped, unless the body is a single empty line.
+        int bodyEnd = bodyText.length();
+        if (bodyText.indexOf('\n') >= 0) {
+            while (bodyEnd > 0 && bodyText.charAt(bodyEnd - 1) == '\n') {
+                bodyEnd--;
+            }
+        }
+
+        // Indent each line.
+        int lineStart = 0;
+        while (lineStart < bodyEnd || (lineStart == 0 && bodyEnd == bodyText.length())) {
+            int lineEnd = bodyText.indexOf('\n', lineStart);
+            if (lineEnd < 0 || lineEnd > bodyEnd) {
+                lineEnd = bodyEnd;
+            }
+            builder.append(indent).append(bodyText, lineStart, lineEnd).append('\n');
+            lineStart = lineEnd + 1;
+        }
+
+        builder.append(getIndent(CLOSING_BRACE_INDENT_AMOUNT));
+        return this;
+    }
+
+
+    /**
+     * Append a method declaration with its body.
+     */
+    public SourceGenerator method(List<String> modifiers, String returnType, String name, List<String> parameters, String bodyText, int indentAmount) {
+        builder.ensureCapacity(builder.length() + returnType.length() + name.length() + bodyText.length() + 64);
+        modifiers(modifiers);
+        builder.append(returnType).append(' ');
+        builder.append(name);
+        parameters(parameters);
+        builder.append(" {");
+        body(bodyText, indentAmount);
+        builder.append('}');
+        return this;
+    }
+
+
+    /**
+     * Append a variable declaration. The initial value is left out if it is blank.
+     */
+    public SourceGenerator variable(List<String> modifiers, String type, String name, String initialValue) {
+        modifiers(modifiers);
+        builder.append(type).append(' ');
+        builder.append(name);
+        if (initialValue.trim().length() > 0) {
+            builder.append(" = ").append(initialValue);
+        }
+        builder.append(';');
+        return this;
+    }
+
+
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+
+
+    private static int countLines(String text) {
+        int lines = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
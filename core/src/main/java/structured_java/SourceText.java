@@ -0,0 +1,136 @@
+package structured_java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Scanning and reshaping of Java source text. Nothing here depends on the PSI or on JavaFX, so it can be used and
+ * measured outside of the IDE.
+ */
+public class SourceText {
+
+    private static final Map<String, Pattern> PATTERN_CACHE = new ConcurrentHashMap<>();
+
+
+    public static int indexOf(String patternString, String stringToSearchIn) {
+        Matcher matcher = getPattern(patternString).matcher(stringToSearchIn);
+        return matcher.find() ? matcher.start() : -1;
+    }
+
+
+    /**
+     * Get the compiled pattern for a regular expression, compiling it only the first time it is used.
+     */
+    public static Pattern getPattern(String patternString) {
+        return PATTERN_CACHE.computeIfAbsent(patternString, Pattern::compile);
+    }
+
+
+    /**
+     * @return The index of the first non-whitespace character, or -1 if there is none.
+     */
+    public static int indexOfFirstNonWhitespace(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Find the first '{' between the start and end offsets that is Java code, skipping braces in comments, string
+     * literals and character literals.
+     * @return The index of the brace in the text, or -1 if there is none.
+     */
+    public static int indexOfFirstCodeBrace(CharSequence text, int startOffset, int endOffset) {
+        int i = startOffset;
+        while (i < endOffset) {
+            char c = text.charAt(i);
+            char next = i + 1 < endOffset ? text.charAt(i + 1) : 0;
+
+            // Skip line comments.
+            if (c == '/' && next == '/') {
+                while (i < endOffset && text.charAt(i) != '\n') {
+                    i++;
+                }
+            }
+
+            // Skip block comments.
+            else if (c == '/' && next == '*') {
+                i += 2;
+                while (i < endOffset && !(text.charAt(i) == '*' && i + 1 < endOffset && text.charAt(i + 1) == '/')) {
+                    i++;
+                }
+                i += 2;
+            }
+
+            // Skip string and character literals, including escaped quotes in them.
+            else if (c == '"' || c == '\'') {
+                i++;
+                while (i < endOffset && text.charAt(i) != c) {
+                    if (text.charAt(i) == '\\') {
+                        i++;
+                    }
+                    i++;
+                }
+                i++;
+            }
+
+            else if (c == '{') {
+                return i;
+            }
+
+            else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Get the lines of a method body between the line of the opening brace and the line of the closing brace.
+     * @param bodyText The text of the body including its braces.
+     */
+    public static List<String> getBodyLines(String bodyText) {
+        if (bodyText.length() < 2) {
+            return Collections.emptyList();
+        }
+        List<String> lines = new ArrayList<>();
+        int lineStart = bodyText.indexOf('\n') + 1;
+        int bodyEnd = bodyText.length() - 1;
+        while (lineStart > 0 && lineStart <= bodyEnd) {
+            int lineEnd = bodyText.indexOf('\n', lineStart);
+            if (lineEnd < 0 || lineEnd >= bodyEnd) {
+                break;
+            }
+            lines.add(bodyText.substring(lineStart, lineEnd));
+            lineStart = lineEnd + 1;
+        }
+        return lines;
+    }
+
+
+    /**
+     * Join the lines, removing up to the given number of leading whitespace characters from each one. Every line
+     * ends with a line break.
+     */
+    public static String stripIndent(List<String> lines, int indentAmount) {
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            int lineStart = 0;
+            while (lineStart < indentAmount && lineStart < line.length() && Character.isWhitespace(line.charAt(lineStart))) {
+                lineStart++;
+            }
+            builder.append(line, lineStart, line.length()).append('\n');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package structured_java;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeyboardFocusInfoTest {
+
+    private static KeyboardFocusInfo focusAt(int[] rowCounts, int areaIndex, int row) {
+        KeyboardFocusInfo focusInfo = new KeyboardFocusInfo();
+        focusInfo.setRowCounts(rowCounts);
+        focusInfo.setFocusedAreaIndex(areaIndex);
+        focusInfo.setFocusedRow(row);
+        return focusInfo;
+    }
+
+
+    @Test
+    public void setRowCountsClampsTheFocusedRow() {
+        KeyboardFocusInfo focusInfo = focusAt(new int[] {5, 3}, 0, 4);
+        focusInfo.setRowCounts(new int[] {2, 3});
+        assertEquals(0, focusInfo.getFocusedAreaIndex());
+        assertEquals(1, focusInfo.getFocusedRow());
+    }
+
+
+    @Test
+    public void setRowCountsClampsTheFocusedArea() {
+        KeyboardFocusInfo focusInfo = focusAt(new int[] {5, 3, 4}, 2, 3);
+        focusInfo.setRowCounts(new int[] {5, 2});
+        assertEquals(1, focusInfo.getFocusedAreaIndex());
+        assertEquals(1, focusInfo.getFocusedRow());
+    }
+
+
+    @Test
+    public void setRowCountsWithEmptyAreas() {
+        KeyboardFocusInfo focusInfo = focusAt(new int[] {5, 3}, 1, 2);
+        focusInfo.setRowCounts(new int[] {5, 0});
+        assertEquals(1, focusInfo.getFocusedAreaIndex());
+        assertEquals(0, focusInfo.getFocusedRow());
+
+        focusInfo.setRowCounts(new int[0]);
+        assertEquals(0, focusInfo.getFocusedAreaIndex());
+        assertEquals(0, focusInfo.getFocusedRow());
+    }
+
+
+    @Test
+    public void moveAreaStaysInTheGrid() {
+        KeyboardFocusInfo focusInfo = focusAt(new int[] {2, 2, 2}, 0, 0);
+        assertFalse(focusInfo.moveArea(-1));
+        assertEquals(0, focusInfo.getFocusedAreaIndex());
+        assertTrue(focusInfo.moveArea(2));
+        assertEquals(2, focusInfo.getFocusedAreaIndex());
+        assertFalse(focusInfo.moveArea(1));
+        assertEquals(2, focusInfo.getFocusedAreaIndex());
+    }
+
+
+    @Test
+    public void moveRowStaysInTheFocusedArea() {
+        KeyboardFocusInfo focusInfo = focusAt(new int[] {3, 10}, 0, 0);
+        assertFalse(focusInfo.moveRow(-1));
+        assertTrue(focusInfo.moveRow(2));
+        assertEquals(2, focusInfo.getFocusedRow());
+        assertFalse(focusInfo.moveRow(1));
+        assertEquals(2, focusInfo.getFocusedRow());
+    }
+
+
+    @Test
+    public void moveRowWithoutAreas() {
+        KeyboardFocusInfo focusInfo = new KeyboardFocusInfo();
+        assertFalse(focusInfo.moveRow(1));
+        assertEquals(0, focusInfo.getFocusedRow());
+    }
+
+
+    @Test
+    public void moveColumnStaysInTheFocusedRow() {
+        KeyboardFocusInfo focusInfo = new KeyboardFocusInfo();
+        focusInfo.setColumnCount(3);
+        assertFalse(focusInfo.moveColumn(-1));
+        assertTrue(focusInfo.moveColumn(2));
+        assertEquals(2, focusInfo.getFocusedColumn());
+        assertFalse(focusInfo.moveColumn(1));
+        assertEquals(2, focusInfo.getFocusedColumn());
+    }
+
+
+    @Test
+    public void setColumnCountClampsTheFocusedColumn() {
+        KeyboardFocusInfo focusInfo = new KeyboardFocusInfo();
+        focusInfo.setColumnCount(5);
+        focusInfo.setFocusedColumn(4);
+        focusInfo.setColumnCount(2);
+        assertEquals(1, focusInfo.getFocusedColumn());
+        focusInfo.setColumnCount(0);
+        assertEquals(0, focusInfo.getFocusedColumn());
+        assertFalse(focusInfo.moveColumn(1));
+    }
+}
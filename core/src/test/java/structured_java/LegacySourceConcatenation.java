@@ -0,0 +1,66 @@
+package structured_java;
+
+import java.util.List;
+
+/**
+ * The source generation as it was before {@link SourceGenerator}, built with String concatenation. The tests check that
+ * the generator's output is the same, and the benchmarks compare the two.
+ */
+public class LegacySourceConcatenation {
+
+    public static String body(String bodyText, int indentAmount) {
+        String sourceText = "";
+        for (String line : bodyText.split("\n")) {
+            sourceText += repeat(" ", indentAmount);
+            sourceText += line + "\n";
+        }
+        sourceText = "\n" + sourceText + "    ";
+        return sourceText;
+    }
+
+
+    public static String method(List<String> modifiers, String returnType, String name, List<String> parameters, String bodyText, int indentAmount) {
+        String methodText = "";
+        for (String modifier : modifiers) {
+            methodText += modifier + " ";
+        }
+        methodText += returnType + " ";
+        methodText += name;
+        methodText += "(";
+        for (int i = 0; i < parameters.size(); i++) {
+            methodText += parameters.get(i);
+            if (i != parameters.size() - 1) {
+                methodText += ", ";
+            }
+        }
+        methodText += ")";
+        methodText += " {";
+        methodText += body(bodyText, indentAmount) + "}";
+        return methodText;
+    }
+
+
+    public static String variable(List<String> modifiers, String type, String name, String initialValue) {
+        String sourceText = "";
+        for (String modifier : modifiers) {
+            sourceText += modifier + " ";
+        }
+        sourceText += type + " ";
+        sourceText += name;
+        if (initialValue.trim().length() > 0) {
+            sourceText += " = " + initialValue;
+        }
+        sourceText += ";";
+        return sourceText;
+    }
+
+
+    // The same as StringUtils.repeat, which the old code used.
+    private static String repeat(String text, int count) {
+        String repeated = "";
+        for (int i = 0; i < count; i++) {
+            repeated += text;
+        }
+        return repeated;
+    }
+}
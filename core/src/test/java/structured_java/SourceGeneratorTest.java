@@ -0,0 +1,122 @@
+package structured_java;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SourceGeneratorTest {
+
+    private static final List<String> MODIFIERS = Arrays.asList("public", "static");
+    private static final List<String> PARAMETERS = Arrays.asList("String name", "int count");
+
+
+    private static void assertBodyMatchesLegacy(String bodyText, int indentAmount) {
+        assertEquals(LegacySourceConcatenation.body(bodyText, indentAmount),
+                     new SourceGenerator().body(bodyText, indentAmount).toString());
+    }
+
+
+    @Test
+    public void emptyBody() {
+        assertBodyMatchesLegacy("", 8);
+        assertEquals("\n        \n    ", new SourceGenerator().body("", 8).toString());
+    }
+
+
+    @Test
+    public void bodyWithoutLineBreak() {
+        assertBodyMatchesLegacy("return 1;", 8);
+        assertEquals("\n        return 1;\n    ", new SourceGenerator().body("return 1;", 8).toString());
+    }
+
+
+    @Test
+    public void trailingBlankLinesAreDropped() {
+        assertBodyMatchesLegacy("int a = 1;\nreturn a;\n\n\n", 8);
+        assertEquals("\n        int a = 1;\n        return a;\n    ", new SourceGenerator().body("int a = 1;\nreturn a;\n\n\n", 8).toString());
+    }
+
+
+    @Test
+    public void onlyLineBreaks() {
+        assertBodyMatchesLegacy("\n", 8);
+        assertBodyMatchesLegacy("\n\n", 8);
+        assertEquals("\n    ", new SourceGenerator().body("\n\n", 8).toString());
+    }
+
+
+    @Test
+    public void leadingAndInnerBlankLinesAreKept() {
+        assertBodyMatchesLegacy("\n\nint a = 1;\n\nreturn a;", 8);
+    }
+
+
+    @Test
+    public void nestedIndentIsKept() {
+        assertBodyMatchesLegacy("if (a) {\n    return;\n}\n", 8);
+    }
+
+
+    @Test
+    public void indentAmounts() {
+        assertBodyMatchesLegacy("return;\n", 0);
+        assertBodyMatchesLegacy("return;\n", 32);
+        // Longer indents than the cached ones are built when they are needed.
+        assertBodyMatchesLegacy("return;\n", 40);
+    }
+
+
+    @Test
+    public void longBody() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            body.append("values.add(").append(i).append(");\n");
+        }
+        assertBodyMatchesLegacy(body.toString(), 8);
+    }
+
+
+    @Test
+    public void method() {
+        assertEquals(LegacySourceConcatenation.method(MODIFIERS, "int", "count", PARAMETERS, "return count;\n", 8),
+                     new SourceGenerator().method(MODIFIERS, "int", "count", PARAMETERS, "return count;\n", 8).toString());
+        assertEquals("public static int count(String name, int count) {\n        return count;\n    }",
+                     new SourceGenerator().method(MODIFIERS, "int", "count", PARAMETERS, "return count;\n", 8).toString());
+    }
+
+
+    @Test
+    public void methodWithoutModifiersOrParameters() {
+        List<String> none = Collections.emptyList();
+        assertEquals(LegacySourceConcatenation.method(none, "void", "run", none, "", 8),
+                     new SourceGenerator().method(none, "void", "run", none, "", 8).toString());
+    }
+
+
+    @Test
+    public void variable() {
+        assertEquals(LegacySourceConcatenation.variable(MODIFIERS, "int", "count", "0"),
+                     new SourceGenerator().variable(MODIFIERS, "int", "count", "0").toString());
+        assertEquals("public static int count = 0;", new SourceGenerator().variable(MODIFIERS, "int", "count", "0").toString());
+    }
+
+
+    @Test
+    public void variableWithBlankInitialValue() {
+        assertEquals(LegacySourceConcatenation.variable(MODIFIERS, "int", "count", "  "),
+                     new SourceGenerator().variable(MODIFIERS, "int", "count", "  ").toString());
+        assertEquals("int count;", new SourceGenerator().variable(Collections.emptyList(), "int", "count", "").toString());
+    }
+
+
+    @Test
+    public void getIndent() {
+        assertEquals("", SourceGenerator.getIndent(0));
+        assertEquals("    ", SourceGenerator.getIndent(4));
+        assertEquals(40, SourceGenerator.getIndent(40).length());
+    }
+}
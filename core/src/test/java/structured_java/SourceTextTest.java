@@ -0,0 +1,73 @@
+package structured_java;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SourceTextTest {
+
+    private static int indexOfFirstCodeBrace(String text) {
+        return SourceText.indexOfFirstCodeBrace(text, 0, text.length());
+    }
+
+
+    @Test
+    public void braceOfMethod() {
+        String method = "public void run() {\n    return;\n}";
+        assertEquals(method.indexOf('{'), indexOfFirstCodeBrace(method));
+    }
+
+
+    @Test
+    public void noBrace() {
+        assertEquals(-1, indexOfFirstCodeBrace("abstract void run();"));
+        assertEquals(-1, indexOfFirstCodeBrace(""));
+    }
+
+
+    @Test
+    public void bracesInCommentsAreSkipped() {
+        String lineComment = "// Returns {x}\nvoid run() {}";
+        assertEquals(lineComment.lastIndexOf("{}"), indexOfFirstCodeBrace(lineComment));
+
+        String blockComment = "/** Returns {@code x}. */\nvoid run() {}";
+        assertEquals(blockComment.lastIndexOf("{}"), indexOfFirstCodeBrace(blockComment));
+
+        String commentInSignature = "void run(/* { */ int a) {}";
+        assertEquals(commentInSignature.lastIndexOf("{}"), indexOfFirstCodeBrace(commentInSignature));
+    }
+
+
+    @Test
+    public void bracesInLiteralsAreSkipped() {
+        String string = "@Deprecated(since = \"{\") void run() {}";
+        assertEquals(string.lastIndexOf("{}"), indexOfFirstCodeBrace(string));
+
+        String escapedQuote = "@Name(\"\\\"{\") void run() {}";
+        assertEquals(escapedQuote.lastIndexOf("{}"), indexOfFirstCodeBrace(escapedQuote));
+
+        String character = "@Value('{') void run() {}";
+        assertEquals(character.lastIndexOf("{}"), indexOfFirstCodeBrace(character));
+
+        String escapedCharacter = "@Value('\\'') void run() {}";
+        assertEquals(escapedCharacter.lastIndexOf("{}"), indexOfFirstCodeBrace(escapedCharacter));
+    }
+
+
+    @Test
+    public void unterminatedCommentOrLiteral() {
+        assertEquals(-1, indexOfFirstCodeBrace("void run() /* {}"));
+        assertEquals(-1, indexOfFirstCodeBrace("void run() \"{}"));
+        assertEquals(-1, indexOfFirstCodeBrace("void run() // {}"));
+    }
+
+
+    @Test
+    public void onlyTheRangeIsSearched() {
+        String text = "{ class A { void run() {} } }";
+        int methodStart = text.indexOf("void");
+        int methodEnd = text.indexOf('}') + 1;
+        assertEquals(text.indexOf("{}"), SourceText.indexOfFirstCodeBrace(text, methodStart, methodEnd));
+        assertEquals(-1, SourceText.indexOfFirstCodeBrace(text, methodStart, text.indexOf("{}")));
+    }
+}
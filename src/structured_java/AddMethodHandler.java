@@ -1,22 +1,17 @@
 package structured_java;
 
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.WriteCommandAction;
-import com.intellij.openapi.editor.Editor;
-import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Computable;
-import com.intellij.psi.PsiClass;
-import com.intellij.psi.PsiField;
-import com.intellij.psi.PsiMethod;
+import com.intellij.psi.*;
+import com.intellij.util.IncorrectOperationException;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.TextField;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import static structured_java.Utilities.getCurrentClass;
 
@@ -24,6 +19,8 @@ public class AddMethodHandler implements EventHandler<ActionEvent> {
 
     public static final int DEFAULT_INDENT_AMOUNT = 8;
 
+    private static final Logger LOG = Logger.getInstance(AddMethodHandler.class);
+
     private StructuredJavaToolWindowFactoryJavaFX ui;
 
 
@@ -34,9 +31,12 @@ public class AddMethodHandler implements EventHandler<ActionEvent> {
 
     @Override
     public void handle(ActionEvent event) {
-        // Insert the text of the new method into the source code using the information in the method editing scene.
-        int offsetToInsertMethod = getOffsetToAddNewMethod(ui.getProject());
-        insertNewMethodText(ui.getMethodEditingScene(), offsetToInsertMethod);
+        // Add the new method to the class using the information in the method editing scene.
+        try {
+            insertNewMethod(ui.getMethodEditingScene());
+        } catch (IncorrectOperationException e) {
+            LOG.warn("The new method could not be added to the class", e);
+        }
 
         // Focus on the row of the new method.
         KeyboardFocusInfo focusInfo = ui.getClassOutlineScene().getKeyboardFocusInfo();
@@ -48,91 +48,72 @@ public class AddMethodHandler implements EventHandler<ActionEvent> {
     }
 
 
-    public static int getOffsetToAddNewMethod(Project project) {
-
-        // Get the class methods.
-        PsiClass currentClass = getCurrentClass(project);
-        PsiMethod[] psiMethods = ApplicationManager.getApplication().runReadAction((Computable<PsiMethod[]>) currentClass::getMethods);
-        List<PsiMethod> methods = Arrays.asList(psiMethods);
-        PsiField[] psiFields = ApplicationManager.getApplication().runReadAction((Computable<PsiField[]>) currentClass::getFields);
-        List<PsiField> variables = Arrays.asList(psiFields);
+    /**
+     * Get the element a new method is added after. This is the last method if it exists, otherwise the last variable
+     * if it exists, otherwise the class left brace. Must be called with read access.
+     */
+    public static PsiElement getAnchorToAddNewMethod(PsiClass currentClass) {
+        PsiMethod[] methods = currentClass.getMethods();
+        if (methods.length > 0) {
+            return methods[methods.length - 1];
+        }
+        PsiField[] variables = currentClass.getFields();
+        if (variables.length > 0) {
+            return variables[variables.length - 1];
+        }
+        return currentClass.getLBrace();
+    }
 
-        // Modify the source code to add the method.
-        AtomicInteger offsetToInsertMethod = new AtomicInteger();
-        WriteCommandAction.writeCommandAction(project).run(() -> {
 
-            // Insert the method after the last method if it exists.
-            if (methods.size() > 0) {
-                PsiMethod lastMethod = methods.get(methods.size() - 1);
-                offsetToInsertMethod.set(lastMethod.getTextRange().getEndOffset());
-            }
+    /**
+     * Add the method in the method editing scene to the current class. The method is built from the PSI element
+     * factory and added after the anchor member, so it is part of the PSI as soon as this returns.
+     * @return The method that was added to the class.
+     * @throws IncorrectOperationException If the method in the scene isn't valid Java.
+     */
+    public static PsiMethod insertNewMethod(MethodEditingScene methodEditingScene) {
+        Project project = methodEditingScene.getUi().getProject();
+        return insertMethod(project, getCurrentClass(project), getNewMethodText(methodEditingScene));
+    }
 
-            // Otherwise insert the method after the last variable if it exists.
-            else if (variables.size() > 0) {
-                PsiField lastVariable = variables.get(variables.size() - 1);
-                offsetToInsertMethod.set(lastVariable.getTextRange().getEndOffset());
-            }
 
-            // Otherwise add the method on the line after the class left brace.
-            else {
-                offsetToInsertMethod.set(currentClass.getLBrace().getTextOffset() + 1);
-            }
+    /**
+     * Add a method to the class after the anchor member.
+     * @return The method that was added to the class.
+     * @throws IncorrectOperationException If the method text isn't valid Java.
+     */
+    public static PsiMethod insertMethod(Project project, PsiClass currentClass, String methodText) {
+        return TimedActions.computeWriteCommand(Metrics.MEMBER_INSERT, WriteCommandAction.writeCommandAction(project), () -> {
+            PsiMethod newMethod = PsiElementFactory.getInstance(project).createMethodFromText(methodText, currentClass);
+            return (PsiMethod) currentClass.addAfter(newMethod, getAnchorToAddNewMethod(currentClass));
         });
-
-        return offsetToInsertMethod.get();
     }
 
 
-    public static void insertNewMethodText(MethodEditingScene methodEditingScene, int offsetToInsertMethod) {
-        // Get the class methods.
-        Project project = methodEditingScene.getUi().getProject();
-        PsiClass currentClass = getCurrentClass(project);
-        PsiMethod[] psiMethods = ApplicationManager.getApplication().runReadAction((Computable<PsiMethod[]>) currentClass::getMethods);
-
-        // Modify the source code to add the method.
-        WriteCommandAction.writeCommandAction(project).run(() -> {
-
-            // Build the source text of the method.
-            String methodTextToInsert = "\n\n    ";
-
-            // Modifiers
-            for (ComboBox<String> modifierBox : methodEditingScene.getModifierBoxes()) {
-                methodTextToInsert += modifierBox.getValue() + " ";
-            }
-
-            // Return type
-            methodTextToInsert += methodEditingScene.getReturnTypeField().getText() + " ";
-
-            // Name
-            methodTextToInsert += methodEditingScene.getNameField().getText();
-
-            // Parameters
-            {
-                methodTextToInsert += "(";
-                List<TextField> parameterFields = methodEditingScene.getParameterFields();
-
-                // Add the parameters to the source text.
-                for (int i = 0; i < parameterFields.size(); i++) {
-                    String parameter = parameterFields.get(i).getText();
-                    methodTextToInsert += parameter;
-                    if (i != parameterFields.size() - 1) {
-                        methodTextToInsert += ", ";
-                    }
-                }
-                methodTextToInsert += ")";
-            }
-
-            // Method body
-            methodTextToInsert += " {";
-            String sourceText = methodEditingScene.convertMethodAreaTextToSourceText(DEFAULT_INDENT_AMOUNT);
-            methodTextToInsert += sourceText + "}";
-
-            // Add the new method to the class.
-            Editor editor =  FileEditorManager.getInstance(project).getSelectedTextEditor();
-            editor.getDocument().insertString(offsetToInsertMethod, methodTextToInsert);
-        });
-
-        // Wait until the number of methods in the class changes.
-        Utilities.waitForNumberOfMethodsInClassToChange(psiMethods.length, currentClass);
+    /**
+     * Get the source text of the method in the method editing scene.
+     */
+    public static String getNewMethodText(MethodEditingScene methodEditingScene) {
+        // Modifiers
+        List<String> modifiers = new ArrayList<>();
+        for (ComboBox<String> modifierBox : methodEditingScene.getModifierBoxes()) {
+            modifiers.add(modifierBox.getValue());
+        }
+
+        // Parameters
+        List<String> parameters = new ArrayList<>();
+        for (TextField parameterField : methodEditingScene.getParameterFields()) {
+            parameters.add(parameterField.getText());
+        }
+
+        // Build the source text of the method with the return type, name and body.
+        return new SourceGenerator()
+            .method(modifiers,
+                    methodEditingScene.getReturnTypeField().getText(),
+                    methodEditingScene.getNameField().getText(),
+                    parameters,
+                    methodEditingScene.getMethodTextArea().getText(),
+                    DEFAULT_INDENT_AMOUNT)
+            .toString();
     }
 }
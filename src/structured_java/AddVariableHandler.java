@@ -1,23 +1,22 @@
 package structured_java;
 
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.WriteCommandAction;
-import com.intellij.openapi.editor.Editor;
-import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Computable;
 import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiElementFactory;
 import com.intellij.psi.PsiField;
+import com.intellij.util.IncorrectOperationException;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 
-import java.util.Arrays;
-import java.util.List;
-
 import static structured_java.Utilities.getCurrentClass;
 
 public class AddVariableHandler implements EventHandler<ActionEvent> {
 
+    private static final Logger LOG = Logger.getInstance(AddVariableHandler.class);
+
     private Project project;
     private ClassOutlineScene classOutlineScene;
 
@@ -28,35 +27,15 @@ public class AddVariableHandler implements EventHandler<ActionEvent> {
 
     @Override
     public void handle(ActionEvent event) {
-        
-        // Get the class variables.
         PsiClass currentClass = getCurrentClass(project);
-        PsiField[] psiFields = ApplicationManager.getApplication().runReadAction((Computable<PsiField[]>) currentClass::getFields);
-        List<PsiField> variables = Arrays.asList(psiFields);
-
-        // Modify the source code to add the variable.
-        WriteCommandAction.writeCommandAction(project).run(() -> {
-            int offsetToInsertVariable;
-
-            // Add the variable after the last variable if it exists.
-            if (variables.size() > 0) {
-                PsiField lastVariable = variables.get(variables.size() - 1);
-                offsetToInsertVariable = lastVariable.getTextRange().getEndOffset();
-            }
-
-            // Otherwise add the variable on the line after the class left brace.
-            else {
-                offsetToInsertVariable = currentClass.getLBrace().getTextOffset() + 1;
-            }
-
-            // Add the new variable to the class.
-            String variableTextToInsert = "\n    " + classOutlineScene.getNewVariableSourceText();
-            Editor editor = FileEditorManager.getInstance(project).getSelectedTextEditor();
-            editor.getDocument().insertString(offsetToInsertVariable, variableTextToInsert);
-        });
+        String variableText = classOutlineScene.getNewVariableSourceText();
 
-        // Wait until the number of variables in the class changes.
-        Utilities.waitForNumberOfVariablesInClassToChange(psiFields.length, currentClass);
+        try {
+            insertVariable(project, currentClass, variableText);
+            classOutlineScene.resetNewVariableRow();
+        } catch (IncorrectOperationException e) {
+            LOG.warn("The new variable could not be added to the class", e);
+        }
 
         // Focus on the row of the new variable.
         KeyboardFocusInfo focusInfo = classOutlineScene.getKeyboardFocusInfo();
@@ -65,4 +44,23 @@ public class AddVariableHandler implements EventHandler<ActionEvent> {
         // Rebuild the class outline scene.
         classOutlineScene.buildClassOutlineScene();
     }
+
+
+    /**
+     * Add a variable to the class. The new field is part of the PSI as soon as it is added, so there is no need to
+     * wait for the document to be reparsed.
+     * @return The variable that was added to the class.
+     * @throws IncorrectOperationException If the variable text isn't valid Java.
+     */
+    public static PsiField insertVariable(Project project, PsiClass currentClass, String variableText) {
+        return TimedActions.computeWriteCommand(Metrics.MEMBER_INSERT, WriteCommandAction.writeCommandAction(project), () -> {
+            PsiField newVariable = PsiElementFactory.getInstance(project).createFieldFromText(variableText, currentClass);
+            PsiField[] variables = currentClass.getFields();
+
+            // Add the variable after the last variable if it exists,
+            // otherwise add the variable after the class left brace.
+            PsiElement anchor = variables.length > 0 ? variables[variables.length - 1] : currentClass.getLBrace();
+            return (PsiField) currentClass.addAfter(newVariable, anchor);
+        });
+    }
 }
@@ -0,0 +1,165 @@
+package structured_java;
+
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.notification.Notification;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiNamedElement;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.search.searches.ReferencesSearch;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renames an element and all of its references. The references are searched for in a cancellable background read
+ * action that gives way to write actions, and the rename itself is done in one short write action afterwards. A search
+ * interrupted by a write action is started again as long as the element's file didn't change. The rename is abandoned if
+ * the file of the element or of one of its references changes, because the references found may be out of date, and the
+ * user is told that their changes weren't made.
+ */
+public class BackgroundRenameTask extends Task.Backgroundable {
+
+    public static final int MAX_SEARCH_ATTEMPTS = 20;
+
+    private static final Logger LOG = Logger.getInstance(BackgroundRenameTask.class);
+    private static final String NOTIFICATION_GROUP = "Structured Java";
+
+    private final PsiNamedElement element;
+    private final String oldName;
+    private final String newName;
+    private final Runnable otherEdits;
+    private final Runnable onRenamed;
+    private final List<PsiReference> references = new ArrayList<>();
+    // The modification stamps of the files the references were found in, and of the element's file.
+    private final Map<PsiFile, Long> fileStamps = new HashMap<>();
+    private final PsiFile elementFile;
+    private final long elementFileStamp;
+    private volatile String abandonReason;
+
+
+    /**
+     * @param otherEdits Other changes to the source that are made in the same command as the rename, so they are
+     *                   undone together.
+     * @param onRenamed Run on the event dispatch thread after the element has been renamed.
+     */
+    public BackgroundRenameTask(Project project, PsiNamedElement element, String oldName, String newName, Runnable otherEdits, Runnable onRenamed) {
+        super(project, "Finding usages of " + oldName, true);
+        this.element = element;
+        this.oldName = oldName;
+        this.newName = newName;
+        this.otherEdits = otherEdits;
+        this.onRenamed = onRenamed;
+
+        // The edits of the row were made on the element's file as it is now.
+        this.elementFile = TimedActions.computeReadAction(Metrics.PSI_CHANGE_CHECK, element::getContainingFile);
+        this.elementFileStamp = TimedActions.computeReadAction(Metrics.PSI_CHANGE_CHECK, elementFile::getModificationStamp);
+    }
+
+
+    @Override
+    public void run(@NotNull ProgressIndicator indicator) {
+        indicator.setIndeterminate(true);
+
+        // A write action cancels the search instead of waiting for it to finish. Many write actions don't touch the
+        // element's file, e.g. saving files, so the search is started again once the write action is done if it didn't
+        // change. Each attempt gets its own indicator, because the write action cancels it and not the task.
+        for (int attempt = 1; ; attempt++) {
+            boolean finished = TimedActions.runReadActionWithWriteActionPriority(Metrics.REFERENCE_SEARCH,
+                                                                                this::searchReferences,
+                                                                                new SensitiveProgressWrapper(indicator));
+            indicator.checkCanceled();
+
+            if (TimedActions.computeReadAction(Metrics.PSI_CHANGE_CHECK, () -> hasChanged(elementFile, elementFileStamp))) {
+                abandon("the source changed while its usages were searched for");
+            }
+            if (finished) {
+                return;
+            }
+            if (attempt == MAX_SEARCH_ATTEMPTS) {
+                abandon("the search for its usages was interrupted " + MAX_SEARCH_ATTEMPTS + " times");
+            }
+            Metrics.increment(Metrics.REFERENCE_SEARCH_RETRY);
+            ProgressIndicatorUtils.yieldToPendingWriteActions();
+        }
+    }
+
+
+    private void searchReferences() {
+        Collection<PsiReference> foundReferences = ReferencesSearch.search(element).findAll();
+        references.clear();
+        references.addAll(foundReferences);
+
+        fileStamps.clear();
+        fileStamps.put(elementFile, elementFileStamp);
+        for (PsiReference reference : foundReferences) {
+            PsiFile file = reference.getElement().getContainingFile();
+            fileStamps.putIfAbsent(file, file.getModificationStamp());
+        }
+    }
+
+
+    private static boolean hasChanged(PsiFile file, long stamp) {
+        return !file.isValid() || file.getModificationStamp() != stamp;
+    }
+
+
+    /**
+     * Stop the task and tell the user why once it is cancelled.
+     */
+    private void abandon(String reason) {
+        abandonReason = reason;
+        throw new ProcessCanceledException();
+    }
+
+
+    @Override
+    public void onSuccess() {
+        // The references are only valid for the files they were found in.
+        if (fileStamps.entrySet().stream().anyMatch(entry -> hasChanged(entry.getKey(), entry.getValue()))) {
+            abandonReason = "the source changed while its usages were searched for";
+            onCancel();
+            return;
+        }
+
+        TimedActions.runWriteCommand(Metrics.RENAME_WRITE, WriteCommandAction.writeCommandAction(getProject()).withName("Rename to " + newName), () -> {
+            for (PsiReference reference : references) {
+                reference.handleElementRename(newName);
+            }
+            element.setName(newName);
+
+            // The other edits come last so they can't invalidate the references that were found.
+            otherEdits.run();
+        });
+        onRenamed.run();
+    }
+
+
+    @Override
+    public void onCancel() {
+        Metrics.increment(Metrics.RENAME_ABANDONED);
+
+        // The user cancelled the search themselves, so they know nothing was changed.
+        if (abandonReason == null) {
+            LOG.info("Renaming " + oldName + " to " + newName + " was cancelled");
+            return;
+        }
+        LOG.info("Abandoned renaming " + oldName + " to " + newName + " because " + abandonReason);
+        new Notification(NOTIFICATION_GROUP,
+                         "Rename of " + oldName + " abandoned",
+                         oldName + " was not renamed to " + newName + " and the other changes to its row were not made, because " +
+                         abandonReason + ". Edit the row again to make them.",
+                         NotificationType.WARNING).notify(getProject());
+    }
+}
@@ -1,11 +1,10 @@
 package structured_java;
 
 import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Computable;
 import com.intellij.psi.*;
-import com.intellij.psi.search.searches.ReferencesSearch;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -14,22 +13,35 @@ import javafx.geometry.Insets;
 import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.Control;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static javafx.scene.input.KeyCode.*;
+import static structured_java.UserInterfaceUtilities.MODIFIER_CHOICES;
 import static structured_java.UserInterfaceUtilities.getField;
 import static structured_java.UserInterfaceUtilities.getStyleString;
+import static structured_java.UserInterfaceUtilities.reconcileList;
 
 public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
 
@@ -38,22 +50,34 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
 
     // Constants
     private static final Background HIGHLIGHTED_BACKGROUND = new Background(new BackgroundFill(Color.GRAY, CornerRadii.EMPTY, Insets.EMPTY));
-    private static final List<Area> AREA_ORDERING = Arrays.asList(Area.VARIABLE, Area.METHOD, Area.ENUM, Area.INNER_CLASS);
     private static final ObservableList<String> ACCESS_MODIFIERS = FXCollections.observableArrayList("private", "protected", "public", "None");
     private static final int FIELD_FONT_SIZE = 20;
     private static final int AREA_LABEL_FONT_SIZE = 30;
+    private static final Logger LOG = Logger.getInstance(ClassOutlineScene.class);
+    private static final Set<KeyCode> HANDLED_KEYS = EnumSet.of(UP, DOWN, ENTER, TAB, LEFT, RIGHT, DELETE);
 
     // Data elements
     private PsiClass currentClass;
+    private ClassSnapshot classSnapshot;
     private KeyboardFocusInfo keyboardFocusInfo;
-    private List<PsiField> variables = new ArrayList<>();
-    private List<PsiMethod> methods = new ArrayList<>();
-    private List<PsiClass> enums = new ArrayList<>();
-    private List<PsiClass> innerClasses = new ArrayList<>();
-    private List<List<PsiNamedElement>> dataAreas = new ArrayList<>();
+    private List<Area> shownAreas = new ArrayList<>();
 
     // GUI components
     private VBox root;
+    private VBox classBox;
+    private Label classNameLabel;
+    private ComboBox<String> classSelectorBox;
+    private Button closeInnerClassButton;
+    private CheckBox inheritedInnerClassesCheckBox;
+    private VBox variablesArea;
+    private VBox methodsArea;
+    private VBox enumsArea;
+    private VBox innerClassesArea;
+    private OutlineListView<ClassSnapshot.FieldSnapshot, VariableRow> variableListView;
+    private OutlineListView<ClassSnapshot.MethodSnapshot, MethodRow> methodListView;
+    private VBox enumRowsBox;
+    private VBox innerClassRowsBox;
+    private HBox newVariableRow;
     private Button addVariableButton;
     private Button addMethodButton;
     private ComboBox<String> newVariableAccessModifierBox;
@@ -61,10 +85,15 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
     private TextField newVariableTypeField;
     private TextField newVariableNameField;
     private TextField newVariableInitialValueField;
-    private List<List<ComboBox<String>>> variableModifierComboBoxes = new ArrayList<>();
-    private List<TextField> variableNameTextFields = new ArrayList<>();
-    private List<TextField> variableInitialValueTextFields = new ArrayList<>();
-    private List<TextField> methodNameTextFields = new ArrayList<>();
+    private Pane highlightedComponent;
+    private OutlineRow<ClassSnapshot.InnerClassSnapshot> editingClassRow;
+    private Node focusableColumnsRow;
+    private List<Node> focusableColumns = new ArrayList<>();
+    private Font rowFont;
+    private List<OutlineRow<ClassSnapshot.InnerClassSnapshot>> enumRows = new ArrayList<>();
+    private List<OutlineRow<ClassSnapshot.InnerClassSnapshot>> innerClassRows = new ArrayList<>();
+    private boolean showInheritedInnerClasses;
+    private PsiClass loadingInheritedInnerClassesOf;
 
     // Handlers
     private EventHandler<ActionEvent> addVariableHandler;
@@ -90,165 +119,237 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
 
 
     protected void buildClassOutlineScene() {
+        long start = Metrics.start();
 
-        // Get all data in the currently opened class.
+        // Get the data of the class shown in the outline. The model of a file is only read again if the file changed.
         Project project = ui.getProject();
-        currentClass = Utilities.getCurrentClass(project);
-        variables.clear();
-        variableModifierComboBoxes.clear();
-        variableNameTextFields.clear();
-        variableInitialValueTextFields.clear();
-        variables.addAll(Arrays.asList(ApplicationManager.getApplication().runReadAction((Computable<PsiField[]>)currentClass::getFields)));
-        methods.clear();
-        methodNameTextFields.clear();
-        methods.addAll(Arrays.asList(ApplicationManager.getApplication().runReadAction((Computable<PsiMethod[]>)currentClass::getMethods)));
-        enums.clear();
-        innerClasses.clear();
-
-        // Get any inner enum and regular classes.
-        PsiClass[] allInnerClasses = ApplicationManager.getApplication().runReadAction((Computable<PsiClass[]>) currentClass::getAllInnerClasses);
-        for (PsiClass innerClass : allInnerClasses) {
-            if (innerClass.isEnum()) {
-                enums.add(innerClass);
-            } else {
-                innerClasses.add(innerClass);
-            }
+        OutlineModelService outlineModelService = OutlineModelService.getInstance(project);
+        OutlineModelService.OutlineModel outlineModel = outlineModelService.getCurrentModel();
+        ClassSnapshot currentClassSnapshot = outlineModelService.getCurrentClassSnapshot();
+        if (outlineModel == null || currentClassSnapshot == null) {
+            return;
         }
+        classSnapshot = currentClassSnapshot;
+        currentClass = classSnapshot.getPsiClass();
+
+        // Build the components that don't depend on the class data the first time the scene is built.
+        if (classNameLabel == null) {
+            root.setSpacing(20);
+            root.setPadding(new Insets(0, 0, 0, 20));
+
+            // The component holding the class info.
+            classNameLabel = new Label();
+            classBox = new VBox();
+            classBox.getChildren().add(classNameLabel);
+
+            // The dropdown for choosing between the top level classes of files that have more than one.
+            classSelectorBox = new ComboBox<>();
+            classSelectorBox.setStyle(getStyleString(ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE));
+            classSelectorBox.managedProperty().bind(classSelectorBox.visibleProperty());
+            classSelectorBox.setOnAction(event -> selectClass(classSelectorBox.getSelectionModel().getSelectedIndex()));
+            classBox.getChildren().add(classSelectorBox);
+
+            // The button for going back from an inner class to the class containing it.
+            closeInnerClassButton = new Button();
+            closeInnerClassButton.setStyle(getStyleString(ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE));
+            closeInnerClassButton.managedProperty().bind(closeInnerClassButton.visibleProperty());
+            closeInnerClassButton.setOnAction(event -> closeInnerClass());
+            classBox.getChildren().add(closeInnerClassButton);
+
+            // Inherited inner classes are only loaded when asked for, because that resolves every supertype.
+            inheritedInnerClassesCheckBox = new CheckBox("Show inherited inner classes");
+            inheritedInnerClassesCheckBox.setOnAction(event -> {
+                showInheritedInnerClasses = inheritedInnerClassesCheckBox.isSelected();
+                buildClassOutlineScene();
+            });
+            classBox.getChildren().add(inheritedInnerClassesCheckBox);
 
-        // Add the variables and methods to the data areas list as PsiNamedElement objects.
-        dataAreas.clear();
-        dataAreas.add(new ArrayList<>(variables));
-        dataAreas.add(new ArrayList<>(methods));
-        dataAreas.add(new ArrayList<>(enums));
-        dataAreas.add(new ArrayList<>(innerClasses));
-
-        // Start building the user interface.
-        root.getChildren().clear();
-        root.setSpacing(20);
-        root.setPadding(new Insets(0, 0, 0, 20));
-
-        // The component holding the class info.
-        VBox classBox = new VBox();
-        classBox.getChildren().add(new Label(currentClass.getName()));
-        root.getChildren().add(classBox);
+            // Build the data areas.
+            variablesArea = buildVariablesArea();
+            methodsArea = buildMethodsArea();
+            enumsArea = buildEnumsArea();
+            innerClassesArea = buildInnerClassesArea();
+        }
+        updateClassSelectorBox(outlineModel);
+
+        // Inner classes are shown with the name of the class containing them.
+        String containingClassName = classSnapshot.getContainingClassName();
+        classNameLabel.setText(containingClassName == null ? classSnapshot.getName() : containingClassName + "." + classSnapshot.getName());
+        closeInnerClassButton.setText("Back to " + containingClassName);
+        closeInnerClassButton.setVisible(containingClassName != null);
+
+        // Update the variables and methods. The list views only rebuild the visible rows of members that changed.
+        reconcileList(variableListView.getItems(), classSnapshot.getFields());
+        reconcileList(methodListView.getItems(), classSnapshot.getMethods());
+
+        // The class's own inner classes are followed by the inherited ones once they are loaded.
+        List<ClassSnapshot.InnerClassSnapshot> enums = new ArrayList<>(classSnapshot.getEnums());
+        List<ClassSnapshot.InnerClassSnapshot> innerClasses = new ArrayList<>(classSnapshot.getInnerClasses());
+        if (showInheritedInnerClasses) {
+            List<ClassSnapshot.InnerClassSnapshot> inheritedInnerClasses = outlineModelService.getInheritedInnerClasses(currentClass);
+            if (inheritedInnerClasses == null) {
+                loadInheritedInnerClasses();
+            }
+            else {
+                for (ClassSnapshot.InnerClassSnapshot inheritedInnerClass : inheritedInnerClasses) {
+                    (inheritedInnerClass.isEnum() ? enums : innerClasses).add(inheritedInnerClass);
+                }
+            }
+        }
 
-        // Build the data areas.
-        VBox variablesArea = buildVariablesArea();
-        VBox methodsArea = buildMethodsArea();
-        VBox enumsArea = buildEnumsArea();
-        VBox innerClassesArea = buildInnerClassesArea();
+        enumRows = reconcileRows(enumRows, enums, this::buildClassRow);
+        reconcileList(enumRowsBox.getChildren(), getRowBoxes(enumRows));
 
-        // The component holding the variables.
-        root.getChildren().add(variablesArea);
+        innerClassRows = reconcileRows(innerClassRows, innerClasses, this::buildClassRow);
+        reconcileList(innerClassRowsBox.getChildren(), getRowBoxes(innerClassRows));
 
-        // The component holding the methods.
-        root.getChildren().add(methodsArea);
+        // The component holding the class info, the variables and the methods are always shown.
+        List<Node> areas = new ArrayList<>(Arrays.asList(classBox, variablesArea, methodsArea));
+        shownAreas = new ArrayList<>(Arrays.asList(Area.VARIABLE, Area.METHOD));
 
         // The component holding inner classes that are enums.
-        if (!enums.isEmpty()) {
-            root.getChildren().add(enumsArea);
+        if (!enumRows.isEmpty()) {
+            areas.add(enumsArea);
+            shownAreas.add(Area.ENUM);
         }
 
         // The component holding non-enum inner classes.
-        if (!innerClasses.isEmpty()) {
-            root.getChildren().add(innerClassesArea);
+        if (!innerClassRows.isEmpty()) {
+            areas.add(innerClassesArea);
+            shownAreas.add(Area.INNER_CLASS);
+        }
+        reconcileList(root.getChildren(), areas);
+
+        // Build the rows of the focus grid.
+        int[] rowCounts = new int[shownAreas.size()];
+        for (int i = 0; i < rowCounts.length; i++) {
+            rowCounts[i] = countRows(i);
         }
+        keyboardFocusInfo.setRowCounts(rowCounts);
+
+        // Only the row being edited has editing controls.
+        updateEditingRow();
 
         // Focus on the correct component and highlight the correct area.
         setKeyboardFocus();
         highlightFocusedComponent();
+        Metrics.record(Metrics.OUTLINE_BUILD, start);
     }
 
 
-    private VBox buildVariablesArea() {
-        // Build the component holding the rows.
-        VBox areaRowBox = new VBox();
-        for (PsiField variable : variables) {
-            HBox rowBox = new HBox();
-            rowBox.setSpacing(5);
-
-            // Modifiers
-            PsiElement[] modifiers = ApplicationManager.getApplication().runReadAction((Computable<PsiElement[]>) () -> variable.getModifierList().getChildren());
-            List<ComboBox<String>> currentModifiers = new ArrayList<>();
-            for (PsiElement modifier : modifiers) {
-                if (modifier.getText().trim().isEmpty()) {
-                    continue;
+    private void updateClassSelectorBox(OutlineModelService.OutlineModel outlineModel) {
+        List<String> classNames = new ArrayList<>();
+        for (ClassSnapshot snapshot : outlineModel.getClasses()) {
+            classNames.add(snapshot.getName());
+        }
+
+        // Only replace the choices if they changed, because that fires the action of the dropdown.
+        if (!classSelectorBox.getItems().equals(classNames)) {
+            classSelectorBox.getItems().setAll(classNames);
+        }
+        if (classSelectorBox.getSelectionModel().getSelectedIndex() != outlineModel.getSelectedClassIndex()) {
+            classSelectorBox.getSelectionModel().select(outlineModel.getSelectedClassIndex());
+        }
+        classSelectorBox.setVisible(classNames.size() > 1);
+    }
+
+
+    private void selectClass(int classIndex) {
+        OutlineModelService.OutlineModel outlineModel = OutlineModelService.getInstance(ui.getProject()).getCurrentModel();
+        if (classIndex < 0 || outlineModel == null || classIndex == outlineModel.getSelectedClassIndex()) {
+            return;
+        }
+        OutlineModelService.getInstance(ui.getProject()).selectClass(classIndex);
+        resetKeyboardFocus();
+        buildClassOutlineScene();
+    }
+
+
+    // Load the inherited inner classes in the background and show them once they are loaded.
+    private void loadInheritedInnerClasses() {
+        if (currentClass.equals(loadingInheritedInnerClassesOf)) {
+            return;
+        }
+        PsiClass psiClass = currentClass;
+        loadingInheritedInnerClassesOf = psiClass;
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            OutlineModelService.getInstance(ui.getProject()).loadInheritedInnerClasses(psiClass);
+            Platform.runLater(() -> {
+                loadingInheritedInnerClassesOf = null;
+
+                // Only rebuild if the class is still shown with its inherited inner classes.
+                if (psiClass.equals(currentClass) && showInheritedInnerClasses) {
+                    buildClassOutlineScene();
                 }
-                ComboBox<String> modifierBox = new ComboBox<>(FXCollections.observableArrayList(PsiModifier.MODIFIERS));
-                modifierBox.getSelectionModel().select(modifier.getText());
-                modifierBox.setStyle(getStyleString(ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE));
-                currentModifiers.add(modifierBox);
-                rowBox.getChildren().add(modifierBox);
-            }
-            variableModifierComboBoxes.add(currentModifiers);
-
-            // Type
-            String variableType = ApplicationManager.getApplication().runReadAction((Computable<String>) () -> variable.getType().getPresentableText());
-            TextField variableTypeField = getField(variableType, ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
-            rowBox.getChildren().add(variableTypeField);
-
-            // Name
-            String variableName = ApplicationManager.getApplication().runReadAction((Computable<String>) variable::getName);
-            TextField nameField = getField(variableName, ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
-            variableNameTextFields.add(nameField);
-            rowBox.getChildren().add(nameField);
-
-            // Add an equals sign label and a text field for the initial value.
-            // The equals sign and text field are only shown when the variable has an initial value,
-            // otherwise a button is shown to add an initial value.
-
-            // '=' label.
-            Label equalsSign = new Label(" = ");
-            equalsSign.setStyle(getStyleString(ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE));
-            rowBox.getChildren().add(equalsSign);
-
-            // Initial value field.
-            TextField initialValueField = getField("", ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
-            variableInitialValueTextFields.add(initialValueField);
-            rowBox.getChildren().add(initialValueField);
-
-            // Add initial value button.
-            Button addInitialValueButton = new Button("Set Initial Value");
-            addInitialValueButton.setStyle(getStyleString(ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE));
-            rowBox.getChildren().add(addInitialValueButton);
-
-            // When the button is pressed it is hidden and the text field is made visible.
-            addInitialValueButton.setOnAction(e -> {
-                addInitialValueButton.setVisible(false);
-                addInitialValueButton.setManaged(false);
-                equalsSign.setVisible(true);
-                equalsSign.setManaged(true);
-                initialValueField.setVisible(true);
-                initialValueField.setManaged(true);
-                initialValueField.setText("<Initial Value>");
-                initialValueField.selectAll();
-                initialValueField.requestFocus();
             });
+        });
+    }
 
-            // If the variable has an initial value then hide the button and set the initial value field
-            // to the initial value.
-            boolean variableHasInitializer =  ApplicationManager.getApplication().runReadAction((Computable<Boolean>) variable::hasInitializer);
-            if (variableHasInitializer) {
-                String variableInitialValue = ApplicationManager.getApplication().runReadAction((Computable<String>) () -> variable.getInitializer().getText());
-                initialValueField.setText(variableInitialValue);
 
-                addInitialValueButton.setVisible(false);
-                addInitialValueButton.setManaged(false);
-            }
+    // Show the outline of an inner class of the shown class.
+    private void openInnerClass(PsiClass innerClass) {
+        OutlineModelService.getInstance(ui.getProject()).openInnerClass(innerClass);
+        resetKeyboardFocus();
+        buildClassOutlineScene();
+    }
 
-            // Otherwise hide the initial value field and the equals sign.
-            else {
-                equalsSign.setVisible(false);
-                equalsSign.setManaged(false);
-                initialValueField.setVisible(false);
-                initialValueField.setManaged(false);
+
+    // Go back to the outline of the class containing the shown inner class.
+    private void closeInnerClass() {
+        if (OutlineModelService.getInstance(ui.getProject()).closeInnerClass()) {
+            resetKeyboardFocus();
+            buildClassOutlineScene();
+        }
+    }
+
+
+    // Move the focus to the first area, e.g. before a different class is shown.
+    public void resetKeyboardFocus() {
+        keyboardFocusInfo.setFocusLevel(KeyboardFocusInfo.FocusLevel.AREA);
+        keyboardFocusInfo.setFocusedAreaIndex(0);
+        keyboardFocusInfo.setFocusedRow(0);
+        keyboardFocusInfo.setFocusedColumn(0);
+    }
+
+
+    // Reuse the row of a member if it was rendered from an equal snapshot, otherwise build a new one.
+    private <S extends ClassSnapshot.MemberSnapshot<?>, R extends OutlineRow<S>> List<R> reconcileRows(List<R> currentRows, List<S> snapshots, Function<S, R> rowBuilder) {
+        // Index the currently rendered rows by their element.
+        Map<PsiElement, R> currentRowsByElement = new HashMap<>();
+        for (R row : currentRows) {
+            currentRowsByElement.put(row.getSnapshot().getElement(), row);
+        }
+
+        // Only build rows for members that are new or changed.
+        List<R> rows = new ArrayList<>();
+        for (S snapshot : snapshots) {
+            R row = currentRowsByElement.get(snapshot.getElement());
+            if (row == null || !row.getSnapshot().equals(snapshot)) {
+                row = rowBuilder.apply(snapshot);
             }
+            rows.add(row);
+        }
+
+        return rows;
+    }
 
-            areaRowBox.getChildren().add(rowBox);
+
+    private static List<Node> getRowBoxes(List<? extends OutlineRow<?>> rows) {
+        List<Node> rowBoxes = new ArrayList<>();
+        for (OutlineRow<?> row : rows) {
+            rowBoxes.add(row.getRowBox());
         }
+        return rowBoxes;
+    }
+
+
+    private VBox buildVariablesArea() {
+        // Build the component holding the rows. Only the visible variable rows are rendered.
+        variableListView = new OutlineListView<>(this::buildVariableRow, (row, focused, editing) -> showRowState(row, focused, editing, this::showVariableEditors));
+        VBox.setVgrow(variableListView, Priority.ALWAYS);
 
         // The row for adding a new variable.
-        HBox newVariableRow = new HBox();
+        newVariableRow = new HBox();
         newVariableRow.setSpacing(5);
 
         // The access modifier dropdown.
@@ -264,11 +365,11 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
         newVariableRow.getChildren().add(newVariableStaticModifierBox);
 
         // Type text field.
-        newVariableTypeField = getField("<Type>", ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
+        newVariableTypeField = getField("", ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
         newVariableRow.getChildren().add(newVariableTypeField);
 
         // Name field.
-        newVariableNameField = getField("<Name>", ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
+        newVariableNameField = getField("", ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
         newVariableRow.getChildren().add(newVariableNameField);
 
         // '=' label.
@@ -277,15 +378,20 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
         newVariableRow.getChildren().add(equalsSign);
 
         // Initial value field.
-        newVariableInitialValueField = getField("<Initial Value>", ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
+        newVariableInitialValueField = getField("", ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
         newVariableRow.getChildren().add(newVariableInitialValueField);
+        resetNewVariableRow();
 
         // The button to add a variable.
         addVariableButton = new Button("Add Variable");
         addVariableButton.setStyle(getStyleString(ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE));
         addVariableButton.setOnAction(addVariableHandler);
         newVariableRow.getChildren().add(addVariableButton);
-        areaRowBox.getChildren().add(newVariableRow);
+
+        // The variable rows are followed by the row for adding a new variable.
+        VBox areaRowBox = new VBox();
+        areaRowBox.getChildren().addAll(variableListView, newVariableRow);
+        VBox.setVgrow(areaRowBox, Priority.ALWAYS);
 
         // Build the root component of the area.
         VBox area = new VBox();
@@ -293,20 +399,133 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
         label.setFont(Font.font(ui.getDefaultUiFont().getName(), FontWeight.BOLD, AREA_LABEL_FONT_SIZE));
         area.getChildren().add(label);
         area.getChildren().add(areaRowBox);
+        VBox.setVgrow(area, Priority.ALWAYS);
 
         return area;
     }
 
 
-    private VBox buildMethodsArea() {
-        // Build the component holding the rows.
-        VBox areaRowBox = new VBox();
+    // Set the fields of the row for adding a new variable back to their placeholders.
+    protected void resetNewVariableRow() {
+        newVariableAccessModifierBox.getSelectionModel().selectFirst();
+        newVariableStaticModifierBox.getSelectionModel().selectFirst();
+        newVariableTypeField.setText("<Type>");
+        newVariableNameField.setText("<Name>");
+        newVariableInitialValueField.setText("<Initial Value>");
+    }
 
-        // Create a row for each method.
-        for (PsiMethod method : methods) {
-            HBox rowBox = buildMethodRow(method);
-            areaRowBox.getChildren().add(rowBox);
+
+    // The read-only row of a variable. The editing controls are only created when it is edited.
+    private VariableRow buildVariableRow(ClassSnapshot.FieldSnapshot variable) {
+        HBox rowBox = new HBox();
+        rowBox.setSpacing(5);
+
+        // Modifiers, type and name.
+        for (String modifier : variable.getModifiers()) {
+            rowBox.getChildren().add(getRowText(modifier));
         }
+        rowBox.getChildren().add(getRowText(variable.getType()));
+        rowBox.getChildren().add(getRowText(variable.getName()));
+
+        // The initial value if the variable has one.
+        // An initial value that the stub tree doesn't store is only loaded once the row is edited.
+        if (variable.hasInitializer()) {
+            rowBox.getChildren().add(getRowText(" = "));
+            rowBox.getChildren().add(getRowText(variable.getInitializerText()));
+        }
+
+        return new VariableRow(variable, rowBox);
+    }
+
+
+    // Replace the text of a variable row with the controls for editing the variable.
+    private void showVariableEditors(VariableRow variableRow) {
+        ClassSnapshot.FieldSnapshot variable = variableRow.getSnapshot();
+        List<Node> editors = new ArrayList<>();
+
+        // Modifiers
+        List<ComboBox<String>> currentModifiers = new ArrayList<>();
+        for (String modifier : variable.getModifiers()) {
+            ComboBox<String> modifierBox = new ComboBox<>(MODIFIER_CHOICES);
+            modifierBox.getSelectionModel().select(modifier);
+            modifierBox.setStyle(getStyleString(ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE));
+            currentModifiers.add(modifierBox);
+            editors.add(modifierBox);
+        }
+
+        // Type
+        TextField variableTypeField = getField(variable.getType(), ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
+        editors.add(variableTypeField);
+
+        // Name
+        TextField nameField = getField(variable.getName(), ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
+        editors.add(nameField);
+
+        // Add an equals sign label and a text field for the initial value.
+        // The equals sign and text field are only shown when the variable has an initial value,
+        // otherwise a button is shown to add an initial value.
+
+        // '=' label.
+        Label equalsSign = new Label(" = ");
+        equalsSign.setStyle(getStyleString(ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE));
+        editors.add(equalsSign);
+
+        // Initial value field.
+        TextField initialValueField = getField("", ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
+        editors.add(initialValueField);
+
+        // Add initial value button.
+        Button addInitialValueButton = new Button("Set Initial Value");
+        addInitialValueButton.setStyle(getStyleString(ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE));
+        editors.add(addInitialValueButton);
+
+        // When the button is pressed it is hidden and the text field is made visible.
+        addInitialValueButton.setOnAction(e -> {
+            addInitialValueButton.setVisible(false);
+            addInitialValueButton.setManaged(false);
+            equalsSign.setVisible(true);
+            equalsSign.setManaged(true);
+            initialValueField.setVisible(true);
+            initialValueField.setManaged(true);
+            initialValueField.setText("<Initial Value>");
+            initialValueField.selectAll();
+            initialValueField.requestFocus();
+
+            // The initial value field replaces the button in the focus grid.
+            updateFocusableColumns(variableRow.getRowBox());
+            keyboardFocusInfo.setFocusedColumn(focusableColumns.indexOf(initialValueField));
+        });
+
+        // If the variable has an initial value then hide the button and set the initial value field
+        // to the initial value. Load it from the source if the stub tree doesn't store it.
+        String originalInitializerText = "";
+        if (variable.hasInitializer()) {
+            originalInitializerText = variable.isInitializerLoaded() ? variable.getInitializerText() :
+                TimedActions.computeReadAction(Metrics.CLASS_SNAPSHOT_READ, () ->
+                    variable.getElement().isValid() ? ClassSnapshot.FieldSnapshot.loadInitializerText(variable.getElement()) : "");
+            initialValueField.setText(originalInitializerText);
+
+            addInitialValueButton.setVisible(false);
+            addInitialValueButton.setManaged(false);
+        }
+
+        // Otherwise hide the initial value field and the equals sign.
+        else {
+            equalsSign.setVisible(false);
+            equalsSign.setManaged(false);
+            initialValueField.setVisible(false);
+            initialValueField.setManaged(false);
+        }
+
+        variableRow.setEditors(currentModifiers, variableTypeField, nameField, initialValueField, originalInitializerText);
+        variableRow.showEditors(editors);
+    }
+
+
+    private VBox buildMethodsArea() {
+        // Build the component holding the rows. Only the visible method rows are rendered.
+        methodListView = new OutlineListView<>(this::buildMethodRow, (row, focused, editing) -> showRowState(row, focused, editing, this::showMethodEditors));
+        VBox.setVgrow(methodListView, Priority.ALWAYS);
 
         // Create a row for the button to add a new method.
         addMethodButton = new Button("Add Method");
@@ -314,9 +533,11 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
         addMethodButton.setOnAction(event -> {
             ui.setSceneToEmptyMethodEditingScene();
         });
-        areaRowBox.getChildren().add(addMethodButton);
-
 
+        // The method rows are followed by the button to add a new method.
+        VBox areaRowBox = new VBox();
+        areaRowBox.getChildren().addAll(methodListView, addMethodButton);
+        VBox.setVgrow(areaRowBox, Priority.ALWAYS);
 
         // Build the root component of the area.
         VBox area = new VBox();
@@ -324,6 +545,7 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
         label.setFont(Font.font(ui.getDefaultUiFont().getName(), FontWeight.BOLD, AREA_LABEL_FONT_SIZE));
         area.getChildren().add(label);
         area.getChildren().add(areaRowBox);
+        VBox.setVgrow(area, Priority.ALWAYS);
 
         return area;
     }
@@ -331,86 +553,158 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
 
     private VBox buildEnumsArea() {
         // Build the component holding the rows.
-        VBox areaRowBox = new VBox();
-        for (PsiClass enumClass : enums) {
-            HBox rowBox = new HBox();
-            rowBox.setSpacing(5);
-
-            // Get a list of strings for all of the enum's fields.
-            List<String> currentFields = new ArrayList<>();
+        enumRowsBox = new VBox();
 
-            // Modifiers
-            PsiElement[] modifiers = enumClass.getModifierList().getChildren();
-            for (PsiElement modifier : modifiers) {
-                currentFields.add(modifier.getText());
-            }
+        // Build the root component of the area.
+        VBox area = new VBox();
+        Label label = new Label("Enums");
+        area.getChildren().add(label);
+        area.getChildren().add(enumRowsBox);
 
-            // Name
-            currentFields.add(enumClass.getName());
+        return area;
+    }
 
-            // Add all of the fields as text fields to the current row.
-            for (String field : currentFields) {
-                TextField textField = getField(field);
-                rowBox.getChildren().add(textField);
-            }
 
-            areaRowBox.getChildren().add(rowBox);
-        }
+    private VBox buildInnerClassesArea() {
+        // Build the component holding the rows.
+        innerClassRowsBox = new VBox();
 
         // Build the root component of the area.
         VBox area = new VBox();
-        Label label = new Label("Enums");
+        Label label = new Label("Inner Classes");
         area.getChildren().add(label);
-        area.getChildren().add(areaRowBox);
+        area.getChildren().add(innerClassRowsBox);
 
         return area;
     }
 
 
-    private VBox buildInnerClassesArea() {
-        // Build the component holding the rows.
-        VBox areaRowBox = new VBox();
-        for (PsiClass innerClass : innerClasses) {
-            HBox rowBox = new HBox();
-            rowBox.setSpacing(5);
+    private OutlineRow<ClassSnapshot.InnerClassSnapshot> buildClassRow(ClassSnapshot.InnerClassSnapshot psiClass) {
+        HBox rowBox = new HBox();
+        rowBox.setSpacing(5);
 
-            // Get a list of strings for all of the class's fields.
-            List<String> currentFields = new ArrayList<>();
+        // Modifiers and name.
+        for (String field : getClassRowFields(psiClass)) {
+            rowBox.getChildren().add(getRowText(field));
+        }
+
+        // Where an inherited class comes from.
+        if (psiClass.isInherited()) {
+            rowBox.getChildren().add(getRowText("(from " + psiClass.getInheritedFrom() + ")"));
+        }
+
+        return new OutlineRow<>(psiClass, rowBox);
+    }
 
-            // Modifiers
-            PsiElement[] modifiers = innerClass.getModifierList().getChildren();
-            for (PsiElement modifier : modifiers) {
-                currentFields.add(modifier.getText());
-            }
 
-            // Name
-            currentFields.add(innerClass.getName());
+    private void showClassEditors(OutlineRow<ClassSnapshot.InnerClassSnapshot> classRow) {
+        // Add all of the fields as text fields to the row.
+        List<Node> editors = new ArrayList<>();
+        for (String field : getClassRowFields(classRow.getSnapshot())) {
+            editors.add(getField(field));
+        }
+        if (classRow.getSnapshot().isInherited()) {
+            editors.add(new Label("(from " + classRow.getSnapshot().getInheritedFrom() + ")"));
+        }
+        classRow.showEditors(editors);
+    }
+
+
+    private static List<String> getClassRowFields(ClassSnapshot.InnerClassSnapshot psiClass) {
+        // Get a list of strings for all of the class's fields.
+        List<String> currentFields = new ArrayList<>();
+
+        // Modifiers
+        currentFields.addAll(psiClass.getModifiers());
+
+        // Name
+        currentFields.add(psiClass.getName());
+
+        return currentFields;
+    }
+
+
+    // Text nodes are much cheaper than controls, so rows that aren't being edited are drawn with them.
+    private Text getRowText(String text) {
+        if (rowFont == null) {
+            rowFont = Font.font(ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
+        }
+        Text rowText = new Text(text);
+        rowText.setFont(rowFont);
+        return rowText;
+    }
 
-            // Add all of the fields as text fields to the current row.
-            for (String field : currentFields) {
-                TextField textField = getField(field);
-                rowBox.getChildren().add(textField);
+
+    // Show the editing controls in the focused row if the focus is on a column, and only there.
+    private void updateEditingRow() {
+        Area area = shownAreas.get(keyboardFocusInfo.getFocusedAreaIndex());
+        int row = keyboardFocusInfo.getFocusedRow();
+        boolean rowFocused = keyboardFocusInfo.getFocusLevel() != KeyboardFocusInfo.FocusLevel.AREA;
+        boolean editing = keyboardFocusInfo.getFocusLevel() == KeyboardFocusInfo.FocusLevel.COLUMN;
+
+        // The lists keep the focused row themselves, because they reuse their cells and rows while scrolling.
+        variableListView.setFocusedIndex(rowFocused && area == Area.VARIABLE ? row : -1, editing);
+        methodListView.setFocusedIndex(rowFocused && area == Area.METHOD ? row : -1, editing);
+
+        // The class rows aren't virtualized, so the row being edited is kept.
+        OutlineRow<ClassSnapshot.InnerClassSnapshot> classRowToEdit = null;
+        if (editing && (area == Area.ENUM || area == Area.INNER_CLASS)) {
+            classRowToEdit = (area == Area.ENUM ? enumRows : innerClassRows).get(row);
+        }
+        if (classRowToEdit != editingClassRow || (classRowToEdit != null && !classRowToEdit.isEditing())) {
+            if (editingClassRow != null) {
+                editingClassRow.hideEditors();
+            }
+            editingClassRow = classRowToEdit;
+            if (editingClassRow != null) {
+                showClassEditors(editingClassRow);
             }
+        }
 
-            areaRowBox.getChildren().add(rowBox);
+        // The columns of the focus grid are the focusable components of the row that has the focus.
+        Node focusedRow = keyboardFocusInfo.getFocusLevel() == KeyboardFocusInfo.FocusLevel.COLUMN ? getFocusedRowNode() : null;
+        if (focusedRow != focusableColumnsRow) {
+            updateFocusableColumns(focusedRow);
         }
+    }
 
-        // Build the root component of the area.
-        VBox area = new VBox();
-        Label label = new Label("Inner Classes");
-        area.getChildren().add(label);
-        area.getChildren().add(areaRowBox);
 
-        return area;
+    // Show the focus and editing state a list keeps for one of its rows.
+    private <R extends OutlineRow<?>> void showRowState(R row, boolean focused, boolean editing, Consumer<R> showEditors) {
+        row.getRowBox().setBackground(focused ? HIGHLIGHTED_BACKGROUND : null);
+        if (!editing) {
+            row.hideEditors();
+        }
+        else if (!row.isEditing()) {
+            showEditors.accept(row);
+        }
+    }
+
+
+    // Find the focusable columns of a row once, skipping labels, text, containers and hidden components.
+    private void updateFocusableColumns(Node row) {
+        focusableColumnsRow = row;
+        focusableColumns = new ArrayList<>();
+        if (row instanceof HBox) {
+            for (Node component : ((HBox) row).getChildren()) {
+                if (component instanceof Control && !(component instanceof Label) && component.isVisible() && component.isManaged()) {
+                    focusableColumns.add(component);
+                }
+            }
+        }
+        keyboardFocusInfo.setColumnCount(focusableColumns.size());
     }
 
 
     @Override
     public void handle(KeyEvent event) {
+        // There is nothing to navigate if no class is shown.
+        if (classSnapshot == null) {
+            return;
+        }
+
         // Get the focused area and component.
-        Area currentArea = AREA_ORDERING.get(keyboardFocusInfo.getFocusedAreaIndex());
-        VBox focusedArea = getAreas().get(keyboardFocusInfo.getFocusedAreaIndex());
-        VBox focusedRowArea = (VBox) focusedArea.getChildren().get(1);
+        Area currentArea = shownAreas.get(keyboardFocusInfo.getFocusedAreaIndex());
         Node focusOwner = focusOwnerProperty().get();
 
         // Consume the event in certain situations to prevent undesirable effects.
@@ -429,6 +723,22 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
             event.consume();
         }
 
+        // Other keys never change the focus, so there is nothing more to do for them.
+        if (!HANDLED_KEYS.contains(event.getCode())) {
+            return;
+        }
+
+        // A list builds the row being edited again if it was scrolled out of view, so its columns are found again.
+        if (keyboardFocusInfo.getFocusLevel() == KeyboardFocusInfo.FocusLevel.COLUMN && getFocusedRowNode() != focusableColumnsRow) {
+            updateFocusableColumns(getFocusedRowNode());
+        }
+
+        // Remember the focus so the highlight and keyboard focus are only updated if it changes.
+        KeyboardFocusInfo.FocusLevel originalFocusLevel = keyboardFocusInfo.getFocusLevel();
+        int originalAreaIndex = keyboardFocusInfo.getFocusedAreaIndex();
+        int originalRow = keyboardFocusInfo.getFocusedRow();
+        int originalColumn = keyboardFocusInfo.getFocusedColumn();
+
         // Navigating areas or row with the up/down arrow keys.
         if (event.getCode() == UP) {
             moveFocusUpForAreaOrRow();
@@ -454,9 +764,23 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
                     case ROW: {
                         switch (currentArea) {
                             case METHOD:
-                                PsiMethod selectedMethod = methods.get(keyboardFocusInfo.getFocusedRow());
+                                PsiMethod selectedMethod = methodListView.getItems().get(keyboardFocusInfo.getFocusedRow()).getElement();
                                 ui.setSceneToMethodEditingScene(selectedMethod);
                                 break;
+                            case ENUM:
+                            case INNER_CLASS: {
+                                // Open the outline of the class. Inherited classes belong to other files, so they
+                                // can only be edited like any other row.
+                                List<OutlineRow<ClassSnapshot.InnerClassSnapshot>> classRows = currentArea == Area.ENUM ? enumRows : innerClassRows;
+                                ClassSnapshot.InnerClassSnapshot innerClass = classRows.get(keyboardFocusInfo.getFocusedRow()).getSnapshot();
+                                if (!innerClass.isInherited()) {
+                                    openInnerClass(innerClass.getElement());
+                                    return;
+                                }
+                                keyboardFocusInfo.setFocusLevel(KeyboardFocusInfo.FocusLevel.COLUMN);
+                                keyboardFocusInfo.setFocusedColumn(0);
+                                break;
+                            }
                             default:
                                 keyboardFocusInfo.setFocusLevel(KeyboardFocusInfo.FocusLevel.COLUMN);
                                 keyboardFocusInfo.setFocusedColumn(0);
@@ -467,22 +791,12 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
 
                         // Apply the changes for the row unless it's the last row
                         // because that adds a new element.
-                        int numRowsInCurrentArea = focusedRowArea.getChildren().size();
+                        int numRowsInCurrentArea = keyboardFocusInfo.getRowCount(keyboardFocusInfo.getFocusedAreaIndex());
                         if (keyboardFocusInfo.getFocusedRow() != numRowsInCurrentArea - 1) {
-                            // Do a rename operation if applicable.
-                            handleRename();
-
-                            // Make the changes to a variable if applicable.
-                            if (currentArea == Area.VARIABLE) {
-                                setVariableInitialValue();
-                                setVariableModifiers();
-                            }
-
-                            // Rebuild the UI.
-                            buildClassOutlineScene();
+                            commitFocusedRow();
                         }
 
-                        // Move the focus to row selection and rebuild the ui.
+                        // Move the focus to row selection.
                         keyboardFocusInfo.setFocusLevel(KeyboardFocusInfo.FocusLevel.ROW);
                         break;
                     }
@@ -491,48 +805,28 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
         }
 
         // Use TAB and alt-TAB to cycle through rows in row selection mode, and columns if not.
+        // Labels and hidden components aren't in the focus grid, so they are skipped.
         if (event.getCode() == TAB) {
-            if (!event.isShiftDown()) {
-                if (keyboardFocusInfo.getFocusLevel() == KeyboardFocusInfo.FocusLevel.COLUMN) {
-                    // Skip labels and hidden components.
-                    Node elementToBeFocused;
-                    do {
-                        moveFocusRightOneColumn();
-                        HBox row = (HBox) focusedRowArea.getChildren().get(keyboardFocusInfo.getFocusedRow());
-                        elementToBeFocused = row.getChildren().get(keyboardFocusInfo.getFocusedColumn());
-                    }
-                    while (elementToBeFocused instanceof Label || !elementToBeFocused.isVisible());
-
-                    // If the focused component is a text field then highlight the text.
-                    selectAllTextIfNavigatedToTextField();
-                }
-                else {
-                    moveFocusDownForAreaOrRow();
+            int indexIncrement = event.isShiftDown() ? -1 : 1;
+            if (keyboardFocusInfo.getFocusLevel() == KeyboardFocusInfo.FocusLevel.COLUMN) {
+                if (keyboardFocusInfo.moveColumn(indexIncrement)) {
+                    // If the newly focused component is a text field then highlight the text.
+                    selectAllTextIfTextField(focusableColumns.get(keyboardFocusInfo.getFocusedColumn()));
                 }
             }
             else {
-                if (keyboardFocusInfo.getFocusLevel() == KeyboardFocusInfo.FocusLevel.COLUMN) {
-                    // Skip labels and hidden components.
-                    Node elementToBeFocused;
-                    do {
-                        moveFocusLeftOneColumn();
-                        HBox row = (HBox) focusedRowArea.getChildren().get(keyboardFocusInfo.getFocusedRow());
-                        elementToBeFocused = row.getChildren().get(keyboardFocusInfo.getFocusedColumn());
-                    }
-                    while (elementToBeFocused instanceof Label || !elementToBeFocused.isVisible());
-
-                    // If the focused component is a text field then highlight the text.
-                    selectAllTextIfNavigatedToTextField();
-                }
-                else {
-                    moveFocusUpForAreaOrRow();
-                }
+                moveFocusForAreaOrRow(indexIncrement);
             }
         }
 
         // Use the LEFT key to exit editing a row without making any changes and to move up one focus level.
+        // From the areas of an inner class it goes back to the class containing it.
         if (event.getCode() == LEFT) {
             switch (keyboardFocusInfo.getFocusLevel()) {
+                case AREA: {
+                    closeInnerClass();
+                    return;
+                }
                 case ROW: {
                     keyboardFocusInfo.setFocusLevel(KeyboardFocusInfo.FocusLevel.AREA);
                     break;
@@ -552,7 +846,7 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
                     break;
                 }
                 case ROW: {
-                    if (focusedRowArea.getChildren().get(keyboardFocusInfo.getFocusedRow()) instanceof  HBox) {
+                    if (getFocusedRowNode() instanceof  HBox) {
                         keyboardFocusInfo.setFocusLevel(KeyboardFocusInfo.FocusLevel.COLUMN);
                         keyboardFocusInfo.setFocusedColumn(0);
                     }
@@ -571,31 +865,36 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
                 // If the focus is not on the Add Variable row then delete the focused variable.
                 switch (currentArea) {
                     case VARIABLE: {
-                        PsiField variableToDelete = variables.get(keyboardFocusInfo.getFocusedRow());
-                        WriteCommandAction.writeCommandAction(ui.getProject()).run(variableToDelete::delete);
-
-                        // Wait until the number of variables in the class changes.
-                        Utilities.waitForNumberOfVariablesInClassToChange(variables.size(), currentClass);
+                        PsiField variableToDelete = variableListView.getItems().get(keyboardFocusInfo.getFocusedRow()).getElement();
+                        Utilities.deleteMember(ui.getProject(), variableToDelete);
 
-                        // Rebuild the UI.
-                        buildClassOutlineScene();
+                        // Rebuild the UI once the number of variables in the class changes.
+                        rebuildWhenDone(Utilities.whenNumberOfVariablesInClassChanges(variableListView.getItems().size(), currentClass));
                         break;
                     }
                     case METHOD: {
-                        PsiMethod methodToDelete = methods.get(keyboardFocusInfo.getFocusedRow());
-                        WriteCommandAction.writeCommandAction(ui.getProject()).run(methodToDelete::delete);
+                        PsiMethod methodToDelete = methodListView.getItems().get(keyboardFocusInfo.getFocusedRow()).getElement();
+                        Utilities.deleteMember(ui.getProject(), methodToDelete);
 
-                        // Wait until the number of methods in the class changes.
-                        Utilities.waitForNumberOfMethodsInClassToChange(methods.size(), currentClass);
-
-                        // Rebuild the UI.
-                        buildClassOutlineScene();
+                        // Rebuild the UI once the number of methods in the class changes.
+                        rebuildWhenDone(Utilities.whenNumberOfMethodsInClassChanges(methodListView.getItems().size(), currentClass));
                         break;
                     }
                 }
             }
         }
 
+        // Nothing to update if the focus didn't move.
+        if (keyboardFocusInfo.getFocusLevel() == originalFocusLevel &&
+            keyboardFocusInfo.getFocusedAreaIndex() == originalAreaIndex &&
+            keyboardFocusInfo.getFocusedRow() == originalRow &&
+            keyboardFocusInfo.getFocusedColumn() == originalColumn) {
+            return;
+        }
+
+        // Show the editing controls if a row is being edited now.
+        updateEditingRow();
+
         // Highlight the currently focused row.
         highlightFocusedComponent();
 
@@ -604,96 +903,79 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
     }
 
 
-    private void handleRename() {
-
-        // Get the IntelliJ reference to the element of the row to rename.
-        List<PsiNamedElement> psiNamedElements = dataAreas.get(keyboardFocusInfo.getFocusedAreaIndex());
-        PsiNamedElement psiElement = psiNamedElements.get(keyboardFocusInfo.getFocusedRow());
-
-        // Get the current name of the element in the text field.
-        TextField currentNameField = null;
-        switch (AREA_ORDERING.get(keyboardFocusInfo.getFocusedAreaIndex())) {
-            case VARIABLE:
-                currentNameField = variableNameTextFields.get(keyboardFocusInfo.getFocusedRow());
-                break;
-            case METHOD:
-                currentNameField = methodNameTextFields.get(keyboardFocusInfo.getFocusedRow());
-                break;
-        }
-
-        // Define the function to rename the variable.
-        String textFieldName = currentNameField.getText();
-        Runnable renameVariableAction = () ->
-        {
-            for (PsiReference reference : ReferencesSearch.search(psiElement)) {
-                reference.handleElementRename(textFieldName);
+    private void rebuildWhenDone(CompletableFuture<Void> sourceChange) {
+        sourceChange.whenComplete((result, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                LOG.warn("The class did not change as expected", error);
             }
-            psiElement.setName(textFieldName);
-        };
-
-        // Rename the element if the name changed.
-        String originalName = ApplicationManager.getApplication().runReadAction((Computable<String>) psiElement::getName);
-        if (!textFieldName.equals(originalName)) {
-            WriteCommandAction.runWriteCommandAction(ui.getProject(), renameVariableAction);
-        }
+            buildClassOutlineScene();
+        }));
     }
 
 
-    private void setVariableInitialValue() {
-
-        // Get the current initial value in the source and the value in the initial value text field.
-        PsiField currentVariable = variables.get(keyboardFocusInfo.getFocusedRow());
-        String textFieldInitialValue = variableInitialValueTextFields.get(keyboardFocusInfo.getFocusedRow()).getText();
+    // Write every change made in the focused row to the source in one command, then refresh the rows.
+    private void commitFocusedRow() {
+        Area area = shownAreas.get(keyboardFocusInfo.getFocusedAreaIndex());
+        int rowIndex = keyboardFocusInfo.getFocusedRow();
+        RowEditTransaction transaction;
+        switch (area) {
+            case VARIABLE: {
+                VariableRow variableRow = variableListView.getRow(rowIndex);
+                if (variableRow == null || !variableRow.isEditing()) {
+                    return;
+                }
+                ClassSnapshot.FieldSnapshot variable = variableRow.getSnapshot();
+                transaction = new RowEditTransaction(ui.getProject(), variable.getElement(), variable.getName());
 
-        // Define the function to change the initial value.
-        Runnable setInitialValueAction = () ->
-        {
-            PsiExpression newInitialValue = null;
+                // The modifiers, type and initial value of the variable.
+                List<String> modifiers = new ArrayList<>();
+                for (ComboBox<String> modifierBox : variableRow.getModifierBoxes()) {
+                    modifiers.add(modifierBox.getValue());
+                }
+                transaction.setModifiers(variable.getElement(), variable.getModifiers(), modifiers);
+                transaction.setType(variable.getElement(), variable.getType(), variableRow.getTypeField().getText());
+                transaction.setInitializer(variable.getElement(), variableRow.getOriginalInitializerText(), variableRow.getInitialValueField().getText());
 
-            // Create a new PsiExpression from the new initial value if it is non-empty.
-            if (!textFieldInitialValue.trim().isEmpty()) {
-                newInitialValue = PsiElementFactory.getInstance(ui.getProject()).createExpressionFromText(textFieldInitialValue, currentVariable.getInitializer());
+                transaction.setName(variable.getName(), variableRow.getNameField().getText());
+                break;
             }
-            currentVariable.setInitializer(newInitialValue);
-        };
-
-        // If the initial value changed then update the source.
-        String originalInitialValue = "";
-        boolean variableHasInitializer = ApplicationManager.getApplication().runReadAction((Computable<Boolean>) currentVariable::hasInitializer);
-        if (variableHasInitializer) {
-            originalInitialValue = ApplicationManager.getApplication().runReadAction((Computable<String>) () -> currentVariable.getInitializer().getText());
-        }
-        if (!textFieldInitialValue.equals(originalInitialValue)) {
-            WriteCommandAction.runWriteCommandAction(ui.getProject(), setInitialValueAction);
+            case METHOD: {
+                MethodRow methodRow = methodListView.getRow(rowIndex);
+                if (methodRow == null || !methodRow.isEditing()) {
+                    return;
+                }
+                ClassSnapshot.MethodSnapshot method = methodRow.getSnapshot();
+                transaction = new RowEditTransaction(ui.getProject(), method.getElement(), method.getName());
+                transaction.setName(method.getName(), methodRow.getNameField().getText());
+                break;
+            }
+            default:
+                return;
         }
-    }
 
+        // Refresh the rows once the changes are in the source. A rename finds the references in the background first.
+        transaction.commit(() -> Platform.runLater(this::refreshRows));
+    }
 
-    private void setVariableModifiers() {
-
-        // Get the current initial value in the source and the value in the initial value text field.
-        PsiField currentVariable = variables.get(keyboardFocusInfo.getFocusedRow());
-        PsiModifierList currentModifierList = ApplicationManager.getApplication().runReadAction((Computable<PsiModifierList>) currentVariable::getModifierList);
-
-        // Build a new modifier list from the modifier combo boxes of the current variable.
-        List<ComboBox<String>> currentVariableModifierBoxes = variableModifierComboBoxes.get(keyboardFocusInfo.getFocusedRow());
 
-        // Define the function to change the list of modifiers for the variable.
-        WriteCommandAction.runWriteCommandAction(ui.getProject(), () ->
-        {
-            // Remove all current modifiers from the variable.
-            for (PsiElement modifier : currentModifierList.getChildren()) {
-                if (modifier.getText().trim().isEmpty()) {
-                    continue;
-                }
-                currentModifierList.setModifierProperty(modifier.getText(), false);
-            }
+    // An edit can change other rows than its own, so every member is captured again and changed rows replaced.
+    private void refreshRows() {
+        // The class may have been deleted since the rows were built, so it is checked in the same read action.
+        PsiClass psiClass = currentClass;
+        ClassSnapshot newSnapshot = psiClass == null ? null : TimedActions.computeReadAction(Metrics.CLASS_SNAPSHOT_READ, () ->
+            psiClass.isValid() ? ClassSnapshot.captureInReadAction(psiClass) : null);
+        if (newSnapshot == null) {
+            buildClassOutlineScene();
+            return;
+        }
+        classSnapshot = newSnapshot;
+        reconcileList(variableListView.getItems(), classSnapshot.getFields());
+        reconcileList(methodListView.getItems(), classSnapshot.getMethods());
 
-            // Set new modifiers based on the modifier boxes for the variable.
-            for (ComboBox<String> modifierBox : currentVariableModifierBoxes) {
-                currentModifierList.setModifierProperty(modifierBox.getValue(), true);
-            }
-        });
+        // The rows were rebuilt, so highlight and focus the new component of the focused row.
+        updateEditingRow();
+        highlightFocusedComponent();
+        setKeyboardFocus();
     }
 
 
@@ -708,209 +990,220 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
 
 
     private void moveFocusForAreaOrRow(int indexIncrement) {
-        List<VBox> areas = getAreas();
-        VBox focusedArea = areas.get(keyboardFocusInfo.getFocusedAreaIndex());
-        VBox focusedRowArea = (VBox) focusedArea.getChildren().get(1);
-
         switch (keyboardFocusInfo.getFocusLevel()) {
-            case AREA: {
-                int newIndex = keyboardFocusInfo.getFocusedAreaIndex() + indexIncrement;
-                if (newIndex >= 0 && newIndex < areas.size()) {
-                    keyboardFocusInfo.setFocusedAreaIndex(newIndex);
-                }
+            case AREA:
+                keyboardFocusInfo.moveArea(indexIncrement);
                 break;
-            }
-            case ROW: {
-                int newIndex = keyboardFocusInfo.getFocusedRow() + indexIncrement;
-                if (newIndex >= 0 && newIndex < focusedRowArea.getChildren().size()) {
-                    keyboardFocusInfo.setFocusedRow(newIndex);
-                }
+            case ROW:
+                keyboardFocusInfo.moveRow(indexIncrement);
                 break;
-            }
-        }
-    }
-
-
-    private TextField getFocusedTextField() {
-        List<VBox> areas = getAreas();
-        VBox focusedArea = areas.get(keyboardFocusInfo.getFocusedAreaIndex());
-        VBox focusedRowArea = (VBox) focusedArea.getChildren().get(1);
-        HBox row = (HBox) focusedRowArea.getChildren().get(keyboardFocusInfo.getFocusedRow());
-        return (TextField) row.getChildren().get(keyboardFocusInfo.getFocusedColumn());
-    }
-
-
-    private void resetBackgroundRecursively(VBox node) {
-        for (Node child : node.getChildren()) {
-            if (child instanceof VBox || child instanceof  HBox) {
-                ((Pane) child).setBackground(null);
-            }
-            if (child instanceof VBox) {
-                resetBackgroundRecursively((VBox) child);
-            }
         }
     }
 
 
+    // Only the previously highlighted component is reset, so the cost doesn't depend on the size of the class.
     protected void highlightFocusedComponent() {
-        // Reset the style of every component that can be highlighted.
-        resetBackgroundRecursively((VBox)getRoot());
-
-        // Get the area of focus.
-        VBox areaOfFocus = getAreas().get(keyboardFocusInfo.getFocusedAreaIndex());
-
-        // Highlight the correct component.
+        // Find the component to highlight.
+        Pane componentToHighlight = null;
         switch (keyboardFocusInfo.getFocusLevel()) {
             case AREA:
-                areaOfFocus.setBackground(HIGHLIGHTED_BACKGROUND);
+                componentToHighlight = getArea(keyboardFocusInfo.getFocusedAreaIndex());
                 break;
             case ROW:
             case COLUMN:
-                VBox rowArea = (VBox) areaOfFocus.getChildren().get(1);
-
-                // Don't attempt to highlight the "Add Method" button.
-                Node rowToHighlight = rowArea.getChildren().get(keyboardFocusInfo.getFocusedRow());
-                if (rowToHighlight instanceof  HBox) {
-                    ((HBox) (rowToHighlight)).setBackground(HIGHLIGHTED_BACKGROUND);
+                // Don't attempt to highlight the "Add Method" button. The lists highlight their own rows.
+                Node focusedRow = getFocusedRowNode();
+                if (focusedRow instanceof HBox && !isFocusOnListRow()) {
+                    componentToHighlight = (HBox) focusedRow;
                 }
                 break;
         }
+
+        // Move the highlight if it changed.
+        if (componentToHighlight == highlightedComponent) {
+            return;
+        }
+        if (highlightedComponent != null) {
+            highlightedComponent.setBackground(null);
+        }
+        if (componentToHighlight != null) {
+            componentToHighlight.setBackground(HIGHLIGHTED_BACKGROUND);
+        }
+        highlightedComponent = componentToHighlight;
     }
 
 
-    private void selectAllTextIfNavigatedToTextField() {
-        if (focusOwnerProperty().get() instanceof TextField) {
-            TextField focusedTextField = (TextField) focusOwnerProperty().get();
-            focusedTextField.selectAll();
+    private static void selectAllTextIfTextField(Node component) {
+        if (component instanceof TextField) {
+            ((TextField) component).selectAll();
         }
     }
 
 
     protected void setKeyboardFocus() {
-        VBox focusedArea = getAreas().get(keyboardFocusInfo.getFocusedAreaIndex());
-        VBox focusedRowArea = (VBox) focusedArea.getChildren().get(1);
-
         switch(keyboardFocusInfo.getFocusLevel()) {
             case AREA:
-                focusedArea.requestFocus();
+                getArea(keyboardFocusInfo.getFocusedAreaIndex()).requestFocus();
                 break;
             case ROW:
-                focusedRowArea.getChildren().get(keyboardFocusInfo.getFocusedRow()).requestFocus();
+                Node focusedRow = getFocusedRowNode();
+                if (focusedRow != null) {
+                    focusedRow.requestFocus();
+                }
                 break;
             case COLUMN:
-                HBox row = (HBox)focusedRowArea.getChildren().get(keyboardFocusInfo.getFocusedRow());
-                row.getChildren().get(keyboardFocusInfo.getFocusedColumn()).requestFocus();
+                if (keyboardFocusInfo.getFocusedColumn() < focusableColumns.size()) {
+                    focusableColumns.get(keyboardFocusInfo.getFocusedColumn()).requestFocus();
+                }
                 break;
         }
     }
 
 
-    private void moveFocusRightOneColumn() {
-        VBox focusedArea = getAreas().get(keyboardFocusInfo.getFocusedAreaIndex());
-        VBox focusedRowArea = (VBox) focusedArea.getChildren().get(1);
-
-        // Move the focus one column to the right if we aren't already on the last column.
-        if (keyboardFocusInfo.getFocusedColumn() < ((HBox) focusedRowArea.getChildren().get(keyboardFocusInfo.getFocusedRow())).getChildren().size() - 1 &&
-            keyboardFocusInfo.getFocusLevel() == KeyboardFocusInfo.FocusLevel.COLUMN) {
-            keyboardFocusInfo.incrementColumn();
+    // Count the rows in an area for the focus grid, including rows that aren't currently rendered.
+    private int countRows(int areaIndex) {
+        switch (shownAreas.get(areaIndex)) {
+            case VARIABLE:
+                // The variables are followed by the row for adding a new variable.
+                return variableListView.getItems().size() + 1;
+            case METHOD:
+                // The methods are followed by the button for adding a new method.
+                return methodListView.getItems().size() + 1;
+            case ENUM:
+                return enumRows.size();
+            default:
+                return innerClassRows.size();
         }
     }
 
 
-    private void moveFocusLeftOneColumn() {
-
-        // Move the focus one column to the left if we aren't already on the first column.
-        if (keyboardFocusInfo.getFocusedColumn() > 0 &&
-            keyboardFocusInfo.getFocusLevel() == KeyboardFocusInfo.FocusLevel.COLUMN) {
-            keyboardFocusInfo.decrementColumn();
+    // Null if the list has no cell for the focused row, e.g. because it is scrolled out of view.
+    private Node getFocusedRowNode() {
+        int row = keyboardFocusInfo.getFocusedRow();
+        switch (shownAreas.get(keyboardFocusInfo.getFocusedAreaIndex())) {
+            case VARIABLE: {
+                if (row >= variableListView.getItems().size()) {
+                    return newVariableRow;
+                }
+                VariableRow variableRow = variableListView.getRow(row);
+                return variableRow == null ? null : variableRow.getRowBox();
+            }
+            case METHOD: {
+                if (row >= methodListView.getItems().size()) {
+                    return addMethodButton;
+                }
+                MethodRow methodRow = methodListView.getRow(row);
+                return methodRow == null ? null : methodRow.getRowBox();
+            }
+            case ENUM:
+                return enumRows.get(row).getRowBox();
+            default:
+                return innerClassRows.get(row).getRowBox();
         }
     }
 
 
-    public List<VBox> getAreas() {
-        List<VBox> areas = new ArrayList<>();
-        List<Node> rootChildren = ((VBox)getRoot()).getChildren();
-        for (int i = 1; i < rootChildren.size(); i++) {
-            areas.add((VBox) rootChildren.get(i));
+    // Whether the focused row is in the variable or method list, and not the row for adding a member.
+    private boolean isFocusOnListRow() {
+        int row = keyboardFocusInfo.getFocusedRow();
+        switch (shownAreas.get(keyboardFocusInfo.getFocusedAreaIndex())) {
+            case VARIABLE:
+                return row < variableListView.getItems().size();
+            case METHOD:
+                return row < methodListView.getItems().size();
+            default:
+                return false;
         }
-        return areas;
     }
 
+
+    // The first child of the root is the class info, which isn't an area.
+    public VBox getArea(int areaIndex) {
+        return (VBox) ((VBox) getRoot()).getChildren().get(areaIndex + 1);
+    }
+
+
     public String getNewVariableSourceText() {
-        String sourceText = "";
+        List<String> modifiers = new ArrayList<>();
 
         // Access Modifier
         if (!newVariableAccessModifierBox.getValue().equals("None")) {
-            sourceText += newVariableAccessModifierBox.getValue() + " ";
+            modifiers.add(newVariableAccessModifierBox.getValue());
         }
 
         // Static / Non-Static Modifier
         if (newVariableStaticModifierBox.getValue().equals("static")) {
-            sourceText += newVariableStaticModifierBox.getValue() + " ";
+            modifiers.add(newVariableStaticModifierBox.getValue());
         }
 
-        // Type
-        sourceText += newVariableTypeField.getText() + " ";
+        // Type, name, and the initial value if it is non-empty.
+        return new SourceGenerator()
+            .variable(modifiers, newVariableTypeField.getText(), newVariableNameField.getText(), newVariableInitialValueField.getText())
+            .toString();
+    }
 
-        // Name
-        sourceText += newVariableNameField.getText();
 
-        // Add the initial value if it is non-empty.
-        if (newVariableInitialValueField.getText().trim().length() > 0) {
-            sourceText += " = " + newVariableInitialValueField.getText();
+    // The read-only row of a method. The editing controls are only created when it is edited.
+    public MethodRow buildMethodRow(ClassSnapshot.MethodSnapshot method) {
+        HBox rowBox = new HBox();
+        rowBox.setSpacing(5);
+
+        // Modifiers and return type.
+        for (String modifier : method.getModifiers()) {
+            rowBox.getChildren().add(getRowText(modifier));
         }
+        if (!method.isConstructor()) {
+            rowBox.getChildren().add(getRowText(method.getReturnType()));
+        }
+
+        // Parameters, one per line.
+        VBox parametersComponent = new VBox();
+        for (String parameterString : method.getParameters()) {
+            parametersComponent.getChildren().add(getRowText(parameterString));
+        }
+        rowBox.getChildren().add(parametersComponent);
 
-        sourceText += ";";
+        // Name
+        rowBox.getChildren().add(getRowText(method.getName()));
 
-        return sourceText;
+        return new MethodRow(method, rowBox);
     }
 
 
-    public HBox buildMethodRow(PsiMethod method) {
-        HBox rowBox = new HBox();
-        rowBox.setSpacing(5);
+    // Replace the text of a method row with the controls for editing the method.
+    private void showMethodEditors(MethodRow methodRow) {
+        ClassSnapshot.MethodSnapshot method = methodRow.getSnapshot();
+        List<Node> editors = new ArrayList<>();
 
         // Modifiers
-        PsiElement[] modifiers = ApplicationManager.getApplication().runReadAction((Computable<PsiElement[]>) () -> method.getModifierList().getChildren());
-        for (PsiElement modifier : modifiers) {
-            // Skip whitespace. For some reason the list of modifiers includes whitespace.
-            if (modifier instanceof PsiWhiteSpace) {
-                continue;
-            }
-            TextField modifierField = getField(modifier.getText(), ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
-            rowBox.getChildren().add(modifierField);
+        for (String modifier : method.getModifiers()) {
+            TextField modifierField = getField(modifier, ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
+            editors.add(modifierField);
         }
 
         // Return Type
-        boolean methodIsConstructor = ApplicationManager.getApplication().runReadAction((Computable<Boolean>) method::isConstructor);
-        if (!methodIsConstructor) {
-            String methodReturnType = ApplicationManager.getApplication().runReadAction((Computable<String>) () -> method.getReturnType().getPresentableText());
-            TextField returnTypeField = getField(methodReturnType, ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
-            rowBox.getChildren().add(returnTypeField);
+        if (!method.isConstructor()) {
+            TextField returnTypeField = getField(method.getReturnType(), ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
+            editors.add(returnTypeField);
         }
 
         // Build the parameters component.
         VBox parametersListComponent = getMethodFullParametersComponent(method);
-        rowBox.getChildren().add(parametersListComponent);
+        editors.add(parametersListComponent);
 
         // Name
-        String methodName = ApplicationManager.getApplication().runReadAction((Computable<String>) method::getName);
-        TextField methodNameField = getField(methodName, ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
-        methodNameTextFields.add(methodNameField);
-        rowBox.getChildren().add(methodNameField);
+        TextField methodNameField = getField(method.getName(), ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
+        editors.add(methodNameField);
 
-        return rowBox;
+        methodRow.setNameField(methodNameField);
+        methodRow.showEditors(editors);
     }
 
 
-    private VBox getMethodFullParametersComponent(PsiMethod method) {
+    private VBox getMethodFullParametersComponent(ClassSnapshot.MethodSnapshot method) {
         VBox parametersComponent = new VBox();
 
-        PsiParameter[] parameters = ApplicationManager.getApplication().runReadAction((Computable<PsiParameter[]>) () -> method.getParameterList().getParameters());
-        for (PsiParameter parameter : parameters) {
-            String type = ApplicationManager.getApplication().runReadAction((Computable<String>) () -> parameter.getType().getPresentableText());
-            String name = ApplicationManager.getApplication().runReadAction((Computable<String>) parameter::getName);
-            String parameterString = type + " " + name;
+        for (String parameterString : method.getParameters()) {
             TextField parameterField = getField(parameterString, ui.getDefaultUiFont().getName(), FIELD_FONT_SIZE);
             parametersComponent.getChildren().add(parameterField);
         }
@@ -925,14 +1218,13 @@ public class ClassOutlineScene extends Scene implements EventHandler<KeyEvent> {
      */
     private EventHandler<KeyEvent> getExitTextFieldHandler() {
         return event -> {
-            VBox focusedArea = getAreas().get(keyboardFocusInfo.getFocusedAreaIndex());
-            VBox focusedRowArea = (VBox) focusedArea.getChildren().get(1);
             if (event.getCode() == X && event.isControlDown()) {
                 switch (keyboardFocusInfo.getFocusLevel()) {
                     case COLUMN: {
-                        if (keyboardFocusInfo.getFocusedRow() == focusedRowArea.getChildren().size() - 1 &&
+                        if (keyboardFocusInfo.getFocusedRow() == keyboardFocusInfo.getRowCount(keyboardFocusInfo.getFocusedAreaIndex()) - 1 &&
                             keyboardFocusInfo.getFocusedColumn() == 0) {
                             keyboardFocusInfo.setFocusLevel(KeyboardFocusInfo.FocusLevel.ROW);
+                            updateEditingRow();
 
                             // Highlight the currently focused row.
                             highlightFocusedComponent();
@@ -0,0 +1,374 @@
+package structured_java;
+
+import com.intellij.psi.*;
+import com.intellij.psi.impl.java.stubs.PsiFieldStub;
+import com.intellij.psi.stubs.StubElement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable copy of the parts of a class that are shown in the class outline. The whole snapshot is captured in a
+ * single read action, so the UI can be built from it without taking the read lock for every member.
+ *
+ * Everything in a snapshot is read from the stub tree of the file when the file has one, so capturing a snapshot
+ * doesn't load the syntax tree of a large file. The stub tree only stores the text of a field initializer that is a
+ * short simple constant. Any other initializer is shown as {@link FieldSnapshot#INITIALIZER_PLACEHOLDER} and loaded
+ * with {@link FieldSnapshot#loadInitializerText} when the field is edited.
+ */
+public final class ClassSnapshot {
+
+    private final PsiClass psiClass;
+    private final String name;
+    private final String containingClassName;
+    private final List<FieldSnapshot> fields;
+    private final List<MethodSnapshot> methods;
+    private final List<InnerClassSnapshot> enums;
+    private final List<InnerClassSnapshot> innerClasses;
+
+
+    private ClassSnapshot(PsiClass psiClass) {
+        this.psiClass = psiClass;
+        this.name = psiClass.getName();
+        PsiClass containingClass = psiClass.getContainingClass();
+        this.containingClassName = containingClass == null ? null : containingClass.getName();
+
+        List<FieldSnapshot> fields = new ArrayList<>();
+        for (PsiField field : psiClass.getFields()) {
+            fields.add(new FieldSnapshot(field));
+        }
+        this.fields = Collections.unmodifiableList(fields);
+
+        List<MethodSnapshot> methods = new ArrayList<>();
+        for (PsiMethod method : psiClass.getMethods()) {
+            methods.add(new MethodSnapshot(method));
+        }
+        this.methods = Collections.unmodifiableList(methods);
+
+        // Split the inner classes into enums and regular classes. Only the class's own inner classes are read here,
+        // because the inherited ones need the whole supertype hierarchy to be resolved.
+        List<InnerClassSnapshot> enums = new ArrayList<>();
+        List<InnerClassSnapshot> innerClasses = new ArrayList<>();
+        for (PsiClass innerClass : psiClass.getInnerClasses()) {
+            if (innerClass.isEnum()) {
+                enums.add(new InnerClassSnapshot(innerClass, null));
+            } else {
+                innerClasses.add(new InnerClassSnapshot(innerClass, null));
+            }
+        }
+        this.enums = Collections.unmodifiableList(enums);
+        this.innerClasses = Collections.unmodifiableList(innerClasses);
+    }
+
+
+    /**
+     * Capture a snapshot of the class in one read action.
+     */
+    public static ClassSnapshot capture(PsiClass psiClass) {
+        return TimedActions.computeReadAction(Metrics.CLASS_SNAPSHOT_READ, () -> new ClassSnapshot(psiClass));
+    }
+
+    /**
+     * Capture a snapshot of the class in the read action that is already running, e.g. together with the other
+     * classes of its file.
+     */
+    static ClassSnapshot captureInReadAction(PsiClass psiClass) {
+        return new ClassSnapshot(psiClass);
+    }
+
+    /**
+     * Capture the inner classes the class inherits from its supertypes. Must be called in a read action. This resolves
+     * the whole supertype hierarchy, so it should be called in the background and only when the inherited classes are
+     * shown.
+     */
+    static List<InnerClassSnapshot> captureInheritedInnerClasses(PsiClass psiClass) {
+        List<InnerClassSnapshot> snapshots = new ArrayList<>();
+        for (PsiClass innerClass : psiClass.getAllInnerClasses()) {
+            PsiClass containingClass = innerClass.getContainingClass();
+            if (containingClass != null && !psiClass.equals(containingClass)) {
+                snapshots.add(new InnerClassSnapshot(innerClass, containingClass.getName()));
+            }
+        }
+        return Collections.unmodifiableList(snapshots);
+    }
+
+    public PsiClass getPsiClass() {
+        return psiClass;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The name of the class this one is an inner class of, or null if it is a top level class.
+     */
+    public String getContainingClassName() {
+        return containingClassName;
+    }
+
+    public List<FieldSnapshot> getFields() {
+        return fields;
+    }
+
+    public List<MethodSnapshot> getMethods() {
+        return methods;
+    }
+
+    public List<InnerClassSnapshot> getEnums() {
+        return enums;
+    }
+
+    public List<InnerClassSnapshot> getInnerClasses() {
+        return innerClasses;
+    }
+
+
+    private static List<String> getModifiers(PsiModifierListOwner owner) {
+        List<String> modifiers = new ArrayList<>();
+        PsiModifierList modifierList = owner.getModifierList();
+        if (modifierList != null) {
+            // The explicit modifiers are kept in the stub, unlike the children of the modifier list.
+            for (String modifier : PsiModifier.MODIFIERS) {
+                if (modifierList.hasExplicitModifier(modifier)) {
+                    modifiers.add(modifier);
+                }
+            }
+        }
+        return Collections.unmodifiableList(modifiers);
+    }
+
+
+    /**
+     * The data common to every member of a class. Two snapshots are equal if they are of the same element and
+     * everything shown for it is the same.
+     */
+    public abstract static class MemberSnapshot<T extends PsiNamedElement & PsiModifierListOwner> {
+
+        private final T element;
+        private final List<String> modifiers;
+        private final String name;
+
+
+        MemberSnapshot(T element) {
+            this.element = element;
+            this.modifiers = getModifiers(element);
+            this.name = element.getName();
+        }
+
+        public T getElement() {
+            return element;
+        }
+
+        public List<String> getModifiers() {
+            return modifiers;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            MemberSnapshot<?> that = (MemberSnapshot<?>) o;
+            return element == that.element &&
+                   modifiers.equals(that.modifiers) &&
+                   Objects.equals(name, that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(element), modifiers, name);
+        }
+    }
+
+
+    public static final class FieldSnapshot extends MemberSnapshot<PsiField> {
+
+        public static final String INITIALIZER_PLACEHOLDER = "…";
+
+        private final String type;
+        private final boolean hasInitializer;
+        private final boolean initializerLoaded;
+        private final String initializerText;
+
+
+        FieldSnapshot(PsiField field) {
+            super(field);
+            this.type = field.getType().getPresentableText();
+            this.hasInitializer = field.hasInitializer();
+            String text = hasInitializer ? getInitializerText(field) : null;
+            this.initializerLoaded = !hasInitializer || text != null;
+            this.initializerText = initializerLoaded ? text : INITIALIZER_PLACEHOLDER;
+        }
+
+        /**
+         * @return The text of the initializer from the stub if the field has one, otherwise from the syntax tree, which
+         *         is loaded then. Null if the stub doesn't store the initializer.
+         */
+        private static String getInitializerText(PsiField field) {
+            StubElement<?> stub = field instanceof StubBasedPsiElement ? ((StubBasedPsiElement<?>) field).getStub() : null;
+            if (stub instanceof PsiFieldStub) {
+                String stubInitializerText = ((PsiFieldStub) stub).getInitializerText();
+                boolean stored = stubInitializerText != null &&
+                                 !PsiFieldStub.INITIALIZER_NOT_STORED.equals(stubInitializerText) &&
+                                 !PsiFieldStub.INITIALIZER_TOO_LONG.equals(stubInitializerText);
+                return stored ? stubInitializerText : null;
+            }
+            return loadInitializerText(field);
+        }
+
+        /**
+         * Read the text of the initializer from the syntax tree, which loads the tree if it isn't loaded yet. Must be
+         * called in a read action.
+         * @return The text of the initializer, or an empty string if the field doesn't have one.
+         */
+        public static String loadInitializerText(PsiField field) {
+            PsiExpression initializer = field.getInitializer();
+            return initializer == null ? "" : initializer.getText();
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public boolean hasInitializer() {
+            return hasInitializer;
+        }
+
+        /**
+         * @return Whether the text of the initializer is in the snapshot. It isn't if the stub doesn't store it.
+         */
+        public boolean isInitializerLoaded() {
+            return initializerLoaded;
+        }
+
+        /**
+         * @return The text of the initializer, the placeholder if it isn't loaded, or null if the field doesn't have one.
+         */
+        public String getInitializerText() {
+            return initializerText;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!super.equals(o)) {
+                return false;
+            }
+            FieldSnapshot that = (FieldSnapshot) o;
+            return type.equals(that.type) &&
+                   hasInitializer == that.hasInitializer &&
+                   initializerLoaded == that.initializerLoaded &&
+                   Objects.equals(initializerText, that.initializerText);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), type, hasInitializer, initializerLoaded, initializerText);
+        }
+    }
+
+
+    public static final class MethodSnapshot extends MemberSnapshot<PsiMethod> {
+
+        private final String returnType;
+        private final List<String> parameters;
+
+
+        MethodSnapshot(PsiMethod method) {
+            super(method);
+            this.returnType = method.isConstructor() ? null : method.getReturnType().getPresentableText();
+
+            List<String> parameters = new ArrayList<>();
+            for (PsiParameter parameter : method.getParameterList().getParameters()) {
+                parameters.add(parameter.getType().getPresentableText() + " " + parameter.getName());
+            }
+            this.parameters = Collections.unmodifiableList(parameters);
+        }
+
+        public boolean isConstructor() {
+            return returnType == null;
+        }
+
+        /**
+         * @return The presentable return type, or null if the method is a constructor.
+         */
+        public String getReturnType() {
+            return returnType;
+        }
+
+        /**
+         * @return The type and name of every parameter.
+         */
+        public List<String> getParameters() {
+            return parameters;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!super.equals(o)) {
+                return false;
+            }
+            MethodSnapshot that = (MethodSnapshot) o;
+            return Objects.equals(returnType, that.returnType) &&
+                   parameters.equals(that.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), returnType, parameters);
+        }
+    }
+
+
+    public static final class InnerClassSnapshot extends MemberSnapshot<PsiClass> {
+
+        private final boolean isEnum;
+        private final String inheritedFrom;
+
+
+        InnerClassSnapshot(PsiClass innerClass, String inheritedFrom) {
+            super(innerClass);
+            this.isEnum = innerClass.isEnum();
+            this.inheritedFrom = inheritedFrom;
+        }
+
+        public boolean isEnum() {
+            return isEnum;
+        }
+
+        public boolean isInherited() {
+            return inheritedFrom != null;
+        }
+
+        /**
+         * @return The name of the supertype the class is declared in, or null if it is the class's own inner class.
+         */
+        public String getInheritedFrom() {
+            return inheritedFrom;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!super.equals(o)) {
+                return false;
+            }
+            InnerClassSnapshot that = (InnerClassSnapshot) o;
+            return isEnum == that.isEnum &&
+                   Objects.equals(inheritedFrom, that.inheritedFrom);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), isEnum, inheritedFrom);
+        }
+    }
+}
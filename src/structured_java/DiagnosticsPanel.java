@@ -0,0 +1,77 @@
+package structured_java;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * The Diagnostics tab of the tool window. Shows the metrics collected by {@link Metrics} and exports them as JSON.
+ */
+public class DiagnosticsPanel extends JPanel {
+
+    private static final Logger LOG = Logger.getInstance(DiagnosticsPanel.class);
+
+    private final Project project;
+    private final JTextArea metricsTextArea;
+
+
+    public DiagnosticsPanel(Project project) {
+        super(new BorderLayout());
+        this.project = project;
+
+        // The buttons for controlling the metrics.
+        JCheckBox enabledCheckBox = new JCheckBox("Collect metrics", Metrics.isEnabled());
+        enabledCheckBox.addActionListener(event -> Metrics.setEnabled(enabledCheckBox.isSelected()));
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(event -> refresh());
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(event -> {
+            Metrics.reset();
+            refresh();
+        });
+        JButton exportButton = new JButton("Export JSON...");
+        exportButton.addActionListener(event -> exportJson());
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttonPanel.add(enabledCheckBox);
+        buttonPanel.add(refreshButton);
+        buttonPanel.add(resetButton);
+        buttonPanel.add(exportButton);
+        add(buttonPanel, BorderLayout.NORTH);
+
+        // The metrics themselves.
+        metricsTextArea = new JTextArea();
+        metricsTextArea.setEditable(false);
+        metricsTextArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, metricsTextArea.getFont().getSize()));
+        add(new JScrollPane(metricsTextArea), BorderLayout.CENTER);
+
+        refresh();
+    }
+
+
+    public void refresh() {
+        metricsTextArea.setText(Metrics.toText());
+    }
+
+
+    private void exportJson() {
+        FileSaverDescriptor descriptor = new FileSaverDescriptor("Export Metrics", "Save the Structured Java metrics as JSON", "json");
+        VirtualFileWrapper fileWrapper = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, project).save(null, "structured-java-metrics.json");
+        if (fileWrapper == null) {
+            return;
+        }
+        try {
+            Files.write(fileWrapper.getFile().toPath(), Metrics.toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOG.warn("The metrics could not be exported", e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package structured_java;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.editor.colors.EditorColorsManager;
+import com.intellij.openapi.editor.colors.EditorColorsScheme;
+import com.intellij.openapi.project.Project;
+import javafx.scene.text.Font;
+
+import java.awt.*;
+
+/**
+ * Caches the editor font and background color of the global color scheme, so they are read once instead of creating
+ * an editor every time they are needed. The cache is cleared whenever the color scheme changes.
+ */
+public class EditorStyleService {
+
+    private volatile Font editorFont;
+    private volatile Color editorBackgroundColor;
+
+
+    public EditorStyleService(Project project) {
+        // Clear the cache when the global color scheme or its font changes.
+        ApplicationManager.getApplication().getMessageBus().connect(project).subscribe(EditorColorsManager.TOPIC, scheme -> invalidate());
+    }
+
+
+    public static EditorStyleService getInstance(Project project) {
+        return ServiceManager.getService(project, EditorStyleService.class);
+    }
+
+
+    public Font getEditorFont() {
+        Font font = editorFont;
+        if (font == null) {
+            EditorColorsScheme scheme = EditorColorsManager.getInstance().getGlobalScheme();
+            font = Font.font(scheme.getEditorFontName(), scheme.getEditorFontSize());
+            editorFont = font;
+        }
+        return font;
+    }
+
+
+    public Color getEditorBackgroundColor() {
+        Color color = editorBackgroundColor;
+        if (color == null) {
+            color = EditorColorsManager.getInstance().getGlobalScheme().getDefaultBackground();
+            editorBackgroundColor = color;
+        }
+        return color;
+    }
+
+
+    public void invalidate() {
+        editorFont = null;
+        editorBackgroundColor = null;
+    }
+}
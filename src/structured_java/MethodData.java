@@ -0,0 +1,82 @@
+package structured_java;
+
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiModifierList;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The parts of a method shown in the method editing scene, read from the PSI in one read action.
+ */
+public class MethodData {
+
+    private final List<String> modifiers = new ArrayList<>();
+    private String returnType;
+    private String name;
+    private final List<String> parameters = new ArrayList<>();
+    private String sourceText;
+
+
+    /**
+     * The data of a method that doesn't exist yet, with placeholders to type over.
+     */
+    public MethodData() {
+        modifiers.add(PsiModifier.PUBLIC);
+        returnType = "<Return Type>";
+        name = "<Name>";
+        sourceText = "";
+    }
+
+
+    public MethodData(PsiMethod method) {
+        TimedActions.runReadAction(Metrics.METHOD_DATA_READ, () -> {
+            PsiModifierList modifierList = method.getModifierList();
+            for (String modifier : PsiModifier.MODIFIERS) {
+                if (modifierList.hasExplicitModifier(modifier)) {
+                    modifiers.add(modifier);
+                }
+            }
+
+            PsiType methodReturnType = method.getReturnType();
+            returnType = methodReturnType == null ? "" : methodReturnType.getPresentableText();
+            name = method.getName();
+
+            for (PsiParameter parameter : method.getParameterList().getParameters()) {
+                parameters.add(parameter.getType().getPresentableText() + " " + parameter.getName());
+            }
+
+            // The body including its braces, or nothing for an abstract method.
+            PsiCodeBlock body = method.getBody();
+            sourceText = body == null ? "" : body.getText();
+        });
+    }
+
+    public List<String> getModifiers() {
+        return Collections.unmodifiableList(modifiers);
+    }
+
+    public String getReturnType() {
+        return returnType;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getParameters() {
+        return Collections.unmodifiableList(parameters);
+    }
+
+    /**
+     * @return The text of the method body including its braces.
+     */
+    public String getSourceText() {
+        return sourceText;
+    }
+}
@@ -1,17 +1,16 @@
 package structured_java;
 
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
-import com.intellij.openapi.editor.Editor;
-import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Computable;
-import com.intellij.psi.PsiClass;
-import com.intellij.psi.PsiField;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElementFactory;
 import com.intellij.psi.PsiMethod;
-import com.intellij.psi.PsiModifier;
-import javafx.collections.FXCollections;
+import com.intellij.util.IncorrectOperationException;
+import javafx.animation.PauseTransition;
 import javafx.event.EventHandler;
 import javafx.scene.Node;
 import javafx.scene.Scene;
@@ -22,15 +21,16 @@ import javafx.scene.control.TextField;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
-import org.apache.commons.lang3.StringUtils;
+import javafx.util.Duration;
 
 import java.awt.*;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static javafx.scene.input.KeyCode.DELETE;
 import static javafx.scene.input.KeyCode.ENTER;
+import static structured_java.UserInterfaceUtilities.MODIFIER_CHOICES;
 import static structured_java.UserInterfaceUtilities.getField;
 import static structured_java.UserInterfaceUtilities.getStyleString;
 
@@ -38,6 +38,10 @@ public class MethodEditingScene extends Scene implements EventHandler<KeyEvent>
 
     // Constants
     private static final int METHOD_HEADER_FONT_SIZE = 20;
+    public static final int DEFAULT_SOURCE_SYNC_QUIET_PERIOD_MS = 300;
+    private static final Logger LOG = Logger.getInstance(MethodEditingScene.class);
+    private static final String EDIT_METHOD_COMMAND_NAME = "Edit Method";
+    private static final AtomicInteger editingSessionCount = new AtomicInteger();
 
     // The link back to the main UI
     private StructuredJavaToolWindowFactoryJavaFX ui;
@@ -60,6 +64,14 @@ public class MethodEditingScene extends Scene implements EventHandler<KeyEvent>
     // Formatting parameters
     private int initialIndexAmount;
 
+    // Syncing the method text area to the source
+    private int sourceSyncQuietPeriodMs = DEFAULT_SOURCE_SYNC_QUIET_PERIOD_MS;
+    private PauseTransition sourceSyncDelay;
+    private boolean sourceSyncPending;
+
+    // The undo group of the current editing session
+    private String undoGroupId;
+
 
     public StructuredJavaToolWindowFactoryJavaFX getUi() {
         return ui;
@@ -165,6 +177,21 @@ public class MethodEditingScene extends Scene implements EventHandler<KeyEvent>
         this.initialIndexAmount = initialIndexAmount;
     }
 
+    public int getSourceSyncQuietPeriodMs() {
+        return sourceSyncQuietPeriodMs;
+    }
+
+    /**
+     * @param sourceSyncQuietPeriodMs How long typing in the method text area has to pause before the text is written
+     *                                to the source. With 0 the source is updated on every change.
+     */
+    public void setSourceSyncQuietPeriodMs(int sourceSyncQuietPeriodMs) {
+        this.sourceSyncQuietPeriodMs = sourceSyncQuietPeriodMs;
+        if (sourceSyncDelay != null) {
+            sourceSyncDelay.setDuration(Duration.millis(sourceSyncQuietPeriodMs));
+        }
+    }
+
 
     public MethodEditingScene(VBox root, StructuredJavaToolWindowFactoryJavaFX ui) {
         super(root);
@@ -226,7 +253,7 @@ public class MethodEditingScene extends Scene implements EventHandler<KeyEvent>
         // Modifier dropdowns
         String fieldStyle = getDefaultFieldStyle();
         for (String modifier : methodData.getModifiers()) {
-            ComboBox<String> modifierBox = new ComboBox<>(FXCollections.observableArrayList(PsiModifier.MODIFIERS));
+            ComboBox<String> modifierBox = new ComboBox<>(MODIFIER_CHOICES);
             modifierBox.getSelectionModel().select(modifier);
             modifierBox.setStyle(fieldStyle);
             methodRow.getChildren().add(modifierBox);
@@ -255,7 +282,7 @@ public class MethodEditingScene extends Scene implements EventHandler<KeyEvent>
         addModifierButton.setStyle(fieldStyle);
         methodRow.getChildren().add(addModifierButton);
         addModifierButton.setOnAction(event ->  {
-            ComboBox<String> modifierBox = new ComboBox<>(FXCollections.observableArrayList(PsiModifier.MODIFIERS));
+            ComboBox<String> modifierBox = new ComboBox<>(MODIFIER_CHOICES);
             modifierBox.setStyle(fieldStyle);
             methodRow.getChildren().add(modifierBoxes.size(), modifierBox);
             modifierBoxes.add(modifierBox);
@@ -314,15 +341,9 @@ public class MethodEditingScene extends Scene implements EventHandler<KeyEvent>
         // Get the method source text and adjust it to not have brackets or starting indents.
         String methodTextAreaString = methodData.getSourceText();
         if (!isForAddingNewMethod) {
-            String sourceText = methodData.getSourceText();
-            String sourceTextNoBrackets = sourceText.substring(1, sourceText.length() - 1);
-            List<String> lines = Arrays.asList(sourceTextNoBrackets.split("\n"));
-            lines = lines.subList(1, lines.size()-1);
-            initialIndexAmount = TextUtils.indexOf("[^\\s]", lines.get(0));
-            methodTextAreaString = "";
-            for (String line : lines) {
-                methodTextAreaString += line.substring(initialIndexAmount) + "\n";
-            }
+            List<String> lines = SourceText.getBodyLines(methodData.getSourceText());
+            initialIndexAmount = lines.isEmpty() ? 0 : Math.max(0, SourceText.indexOfFirstNonWhitespace(lines.get(0)));
+            methodTextAreaString = SourceText.stripIndent(lines, initialIndexAmount);
         }
         methodTextArea = new TextArea(methodTextAreaString);
 
@@ -341,24 +362,104 @@ public class MethodEditingScene extends Scene implements EventHandler<KeyEvent>
             methodTextArea.setText(methodTextArea.getText().replace("\t", "    "));
         });
 
-        // Add a key listener to the method editing text area so the source code is updated
-        // as soon as the text in the method editing area changes.
+        // Add a key listener to the method editing text area so the source code is updated once typing pauses
+        // for the quiet period, or when the text area loses focus, instead of on every keystroke.
         if (method != null) {
+            sourceSyncDelay = new PauseTransition(Duration.millis(sourceSyncQuietPeriodMs));
+            sourceSyncDelay.setOnFinished(event -> flushPendingSourceChanges());
             methodTextArea.textProperty().addListener((observable, oldValue, newValue) ->
             {
-                WriteCommandAction.runWriteCommandAction(project, () -> {
-                    Editor editor = FileEditorManager.getInstance(project).getSelectedTextEditor();
-                    Document document = editor.getDocument();
+                sourceSyncPending = true;
+                if (sourceSyncQuietPeriodMs > 0) {
+                    sourceSyncDelay.playFromStart();
+                }
+                else {
+                    flushPendingSourceChanges();
+                }
+            });
+            methodTextArea.focusedProperty().addListener((observable, wasFocused, isFocused) ->
+            {
+                if (!isFocused) {
+                    flushPendingSourceChanges();
+                }
+            });
+        }
+    }
 
-                    // Need to find the offset of the left bracket because the UI method text is just the body.
-                    int leftBracketOffset = Utilities.findOffsetOfSubstring(document.getText(method.getTextRange()), "\\{");
 
-                    // Replace the source text.
-                    String sourceText = convertMethodAreaTextToSourceText(initialIndexAmount);
-                    document.replaceString(method.getTextRange().getStartOffset() + leftBracketOffset + 1, method.getTextRange().getEndOffset() - 1, sourceText);
-                });
-            });
+    /**
+     * End the editing session of the method, e.g. when going back to the class outline. The next change to the method
+     * starts a new undo unit.
+     */
+    public void endEditingSession() {
+        undoGroupId = null;
+    }
+
+
+    /**
+     * Get the undo group of the current editing session. Every change made to the method in one session has the same
+     * group, so the changes are merged into one undo unit instead of one per write.
+     */
+    private String getUndoGroupId() {
+        if (undoGroupId == null) {
+            undoGroupId = "structured_java.editMethod." + editingSessionCount.incrementAndGet();
+        }
+        return undoGroupId;
+    }
+
+
+    /**
+     * Write the text in the method text area to the source if it changed since the last write.
+     */
+    public void flushPendingSourceChanges() {
+        if (!sourceSyncPending) {
+            return;
         }
+        sourceSyncPending = false;
+        sourceSyncDelay.stop();
+
+        Project project = ui.getProject();
+        WriteCommandAction.Builder command = WriteCommandAction.writeCommandAction(project).withName(EDIT_METHOD_COMMAND_NAME).withGroupId(getUndoGroupId());
+        TimedActions.runWriteCommand(Metrics.DOCUMENT_SYNC, command, () -> {
+            // Use the document of the method, the selected editor may already show another file.
+            if (!method.isValid()) {
+                return;
+            }
+            PsiDocumentManager documentManager = PsiDocumentManager.getInstance(project);
+            Document document = documentManager.getDocument(method.getContainingFile());
+            if (document == null) {
+                return;
+            }
+
+            // The text range of the method is only right for the document once its last changes are committed.
+            documentManager.commitDocument(document);
+            if (!method.isValid()) {
+                return;
+            }
+
+            // Need to find the offset of the left bracket because the UI method text is just the body.
+            // The document text is scanned in place instead of copying the method text.
+            CharSequence documentText = document.getImmutableCharSequence();
+            TextRange methodRange = method.getTextRange();
+            int leftBracketOffset = SourceText.indexOfFirstCodeBrace(documentText, methodRange.getStartOffset(), methodRange.getEndOffset());
+            if (leftBracketOffset < 0 || documentText.charAt(methodRange.getEndOffset() - 1) != '}') {
+                return;
+            }
+            int bodyStartOffset = leftBracketOffset + 1;
+            int bodyEndOffset = methodRange.getEndOffset() - 1;
+            CharSequence currentSourceText = documentText.subSequence(bodyStartOffset, bodyEndOffset);
+            String sourceText = convertMethodAreaTextToSourceText(initialIndexAmount);
+
+            // Only replace the part of the source text that changed, so the reparse and the undo entry are only as
+            // big as the edit. The common suffix can't overlap the common prefix.
+            int prefixLength = StringUtil.commonPrefixLength(currentSourceText, sourceText);
+            int maxSuffixLength = Math.min(currentSourceText.length(), sourceText.length()) - prefixLength;
+            int suffixLength = Math.min(StringUtil.commonSuffixLength(currentSourceText, sourceText), maxSuffixLength);
+            if (prefixLength == currentSourceText.length() && prefixLength == sourceText.length()) {
+                return;
+            }
+            document.replaceString(bodyStartOffset + prefixLength, bodyEndOffset - suffixLength, sourceText.substring(prefixLength, sourceText.length() - suffixLength));
+        });
     }
 
 
@@ -383,54 +484,44 @@ public class MethodEditingScene extends Scene implements EventHandler<KeyEvent>
 
 
     private void editMethodSource() {
-        PsiClass currentClass = Utilities.getCurrentClass(ui.getProject());
-        PsiMethod[] currentMethods = Utilities.getCurrentMethods(currentClass);
-        PsiField[] currentVariables = Utilities.getCurrentVariables(currentClass);
-        int originalNumberOfMethods = currentMethods.length;
-
-        // Find the offset to insert the method in.
-        int offsetToInsertNewMethod = 0;
-        if (currentMethods.length > 0 && currentMethods[0] != method) {
-            for (PsiMethod currentMethod : currentMethods) {
-                if (currentMethod == method) {
-                    break;
-                }
-                offsetToInsertNewMethod = currentMethod.getTextRange().getEndOffset();
-            }
-        }
-        else if (currentVariables.length > 0) {
-            PsiField lastVariable = currentVariables[currentVariables.length - 1];
-            offsetToInsertNewMethod = lastVariable.getTextRange().getEndOffset();
-        }
-        else {
-            offsetToInsertNewMethod = currentClass.getLBrace().getTextOffset() + 1;
+        // The method is rewritten from the text area below, so a pending write of the text area is not needed.
+        if (sourceSyncDelay != null) {
+            sourceSyncDelay.stop();
         }
+        sourceSyncPending = false;
 
-        // Delete the current method and then insert the new method in its place.
-        WriteCommandAction.writeCommandAction(ui.getProject()).run(() -> method.delete());
-        Utilities.waitForNumberOfMethodsInClassToChange(originalNumberOfMethods, currentClass);
-        AddMethodHandler.insertNewMethodText(this, offsetToInsertNewMethod);
-
-        // Rebuild the method editing scene.
-        PsiMethod[] newPsiMethods = ApplicationManager.getApplication().runReadAction((Computable<PsiMethod[]>) currentClass::getMethods);
-        for (PsiMethod newMethod : newPsiMethods) {
-            String newMethodName = ApplicationManager.getApplication().runReadAction((Computable<String>) newMethod::getName);
-            if (nameField.getText().equals(newMethodName)) {
-                method = newMethod;
-                break;
-            }
+        // Find the index of the currently focused component.
+        int focusedIndex = getFocusedIndexInMethodRow();
+
+        // Replace the method in place, so it keeps its position in the class and the PSI is up to date right away.
+        Project project = ui.getProject();
+        String newMethodText = AddMethodHandler.getNewMethodText(this);
+        WriteCommandAction.Builder command = WriteCommandAction.writeCommandAction(project).withName(EDIT_METHOD_COMMAND_NAME).withGroupId(getUndoGroupId());
+        try {
+            method = TimedActions.computeWriteCommand(Metrics.METHOD_REPLACE, command, () -> {
+                PsiMethod newMethod = PsiElementFactory.getInstance(project).createMethodFromText(newMethodText, method);
+                return (PsiMethod) method.replace(newMethod);
+            });
+        } catch (IncorrectOperationException e) {
+            LOG.warn("The edited method was not updated in the class", e);
         }
 
-        // Find the index of the currently focused component.
-        int focusedIndex = 0;
+        rebuildMethodEditingScene(focusedIndex);
+    }
+
+
+    private int getFocusedIndexInMethodRow() {
         for (int i = 0; i < methodRow.getChildren().size(); i++) {
             Node component = methodRow.getChildren().get(i);
             if (component.equals(getFocusOwner())) {
-                focusedIndex = i;
-                break;
+                return i;
             }
         }
+        return 0;
+    }
 
+
+    private void rebuildMethodEditingScene(int focusedIndex) {
         // Rebuild the UI components.
         VBox root = new VBox();
         setRoot(root);
@@ -458,14 +549,8 @@ public class MethodEditingScene extends Scene implements EventHandler<KeyEvent>
      * @return
      */
     public String convertMethodAreaTextToSourceText(int indentAmount) {
-        String sourceText = "";
-        for (String line : methodTextArea.getText().split("\n")) {
-            sourceText += StringUtils.repeat(" ", indentAmount);
-            sourceText += line + "\n";
-        }
-        sourceText = "\n" + sourceText + "    ";
-
-        return sourceText;
+        String methodAreaText = methodTextArea.getText();
+        return new SourceGenerator(methodAreaText.length() * 2).body(methodAreaText, indentAmount).toString();
     }
 
 
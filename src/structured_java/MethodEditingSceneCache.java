@@ -0,0 +1,116 @@
+package structured_java;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.LowMemoryWatcher;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded least recently used cache of method editing scenes, so moving back and forth between the class outline and
+ * a method doesn't rebuild the method editing scene every time. A cached scene is only reused if the file of its
+ * method hasn't changed since the scene was last left, and the whole cache is cleared when memory runs low.
+ */
+public class MethodEditingSceneCache {
+
+    public static final int DEFAULT_MAX_SIZE = 16;
+
+    private final Project project;
+    private final Map<SmartPsiElementPointer<PsiMethod>, CachedScene> scenes;
+
+
+    public MethodEditingSceneCache(Project project, Disposable parentDisposable) {
+        this(project, parentDisposable, DEFAULT_MAX_SIZE);
+    }
+
+
+    public MethodEditingSceneCache(Project project, Disposable parentDisposable, int maxSize) {
+        this.project = project;
+
+        // An access ordered map drops the least recently used scene once it is full.
+        this.scenes = new LinkedHashMap<SmartPsiElementPointer<PsiMethod>, CachedScene>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SmartPsiElementPointer<PsiMethod>, CachedScene> eldest) {
+                return size() > maxSize;
+            }
+        };
+
+        LowMemoryWatcher.register(this::clear, parentDisposable);
+    }
+
+
+    /**
+     * Get the cached scene of the method if it is still up to date with the source.
+     * @return The cached scene, or null if there is no up to date scene for the method.
+     */
+    public synchronized MethodEditingScene get(PsiMethod method) {
+        // The pointer is created in the read action too, since creating it reads the PSI of the method.
+        return TimedActions.computeReadAction(Metrics.SCENE_CACHE_READ, () -> {
+            if (!method.isValid()) {
+                return null;
+            }
+            SmartPsiElementPointer<PsiMethod> pointer = createPointer(method);
+            CachedScene cachedScene = scenes.get(pointer);
+            if (cachedScene == null) {
+                return null;
+            }
+
+            // The scene is out of date if its method was replaced or its file changed since the scene was left.
+            if (pointer.getElement() != cachedScene.scene.getMethod() || getModificationStamp(method) != cachedScene.modificationStamp) {
+                scenes.remove(pointer);
+                return null;
+            }
+            return cachedScene.scene;
+        });
+    }
+
+
+    /**
+     * Cache the scene of a method as it matches the source right now.
+     */
+    public synchronized void put(MethodEditingScene scene) {
+        PsiMethod method = scene.getMethod();
+        if (method == null) {
+            return;
+        }
+        TimedActions.runReadAction(Metrics.SCENE_CACHE_READ, () -> {
+            if (method.isValid()) {
+                scenes.put(createPointer(method), new CachedScene(scene, getModificationStamp(method)));
+            }
+        });
+    }
+
+
+    public synchronized void clear() {
+        scenes.clear();
+    }
+
+
+    private SmartPsiElementPointer<PsiMethod> createPointer(PsiMethod method) {
+        return SmartPointerManager.getInstance(project).createSmartPsiElementPointer(method);
+    }
+
+
+    private static long getModificationStamp(PsiMethod method) {
+        PsiFile file = method.getContainingFile();
+        return file == null ? -1 : file.getModificationStamp();
+    }
+
+
+    private static class CachedScene {
+
+        private final MethodEditingScene scene;
+        private final long modificationStamp;
+
+
+        CachedScene(MethodEditingScene scene, long modificationStamp) {
+            this.scene = scene;
+            this.modificationStamp = modificationStamp;
+        }
+    }
+}
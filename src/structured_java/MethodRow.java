@@ -0,0 +1,30 @@
+package structured_java;
+
+import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
+
+public class MethodRow extends OutlineRow<ClassSnapshot.MethodSnapshot> {
+
+    private TextField nameField;
+
+
+    public MethodRow(ClassSnapshot.MethodSnapshot method, HBox rowBox) {
+        super(method, rowBox);
+    }
+
+    /**
+     * @return The name field, or null if the row isn't being edited.
+     */
+    public TextField getNameField() {
+        return nameField;
+    }
+
+    public void setNameField(TextField nameField) {
+        this.nameField = nameField;
+    }
+
+    @Override
+    protected void clearEditors() {
+        nameField = null;
+    }
+}
@@ -0,0 +1,212 @@
+package structured_java;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the work the plugin does, e.g. read and write actions, outline builds and
+ * reference searches. Read and write actions are timed by {@link TimedActions}. Collection is off by default and every
+ * call returns right away while it is off, so the timing calls can stay in place.
+ *
+ * Timing is done in two calls so nothing is allocated:
+ * <pre>
+ *     long start = Metrics.start();
+ *     ...
+ *     Metrics.record(Metrics.OUTLINE_BUILD, start);
+ * </pre>
+ */
+public class Metrics {
+
+    // Metric names
+    public static final String OUTLINE_BUILD = "outline.build";
+    public static final String OUTLINE_MODEL_READ = "read.outlineModel";
+    public static final String CLASS_SNAPSHOT_READ = "read.classSnapshot";
+    public static final String METHOD_DATA_READ = "read.methodData";
+    public static final String OUTLINE_STATE_READ = "read.outlineState";
+    public static final String SCENE_CACHE_READ = "read.sceneCache";
+    public static final String PSI_CHANGE_CHECK = "read.psiChangeCheck";
+    public static final String INHERITED_CLASSES_READ = "read.inheritedClasses";
+    public static final String DOCUMENT_SYNC = "write.documentSync";
+    public static final String MEMBER_INSERT = "write.memberInsert";
+    public static final String MEMBER_DELETE = "write.memberDelete";
+    public static final String METHOD_REPLACE = "write.methodReplace";
+    public static final String ROW_COMMIT = "write.rowCommit";
+    public static final String REFERENCE_SEARCH = "read.referenceSearch";
+    public static final String REFERENCE_SEARCH_RETRY = "rename.searchRetry";
+    public static final String RENAME_WRITE = "write.rename";
+    public static final String RENAME_ABANDONED = "rename.abandoned";
+    public static final String PSI_CHANGE_WAIT = "wait.psiChange";
+    public static final String SMART_MODE_WAIT = "wait.smartMode";
+
+    // Bucket i counts the durations below 2^i microseconds, the last bucket counts everything longer.
+    private static final int BUCKET_COUNT = 24;
+
+    private static volatile boolean enabled = Boolean.getBoolean("structured_java.metrics");
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+
+    /**
+     * @return The start time to pass to {@link #record}, or 0 if metrics are off.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+
+    /**
+     * Record the time since the start time in the histogram with the given name.
+     */
+    public static void record(String name, long startNanos) {
+        if (startNanos == 0 || !enabled) {
+            return;
+        }
+        histograms.computeIfAbsent(name, key -> new Histogram()).add(System.nanoTime() - startNanos);
+    }
+
+
+    /**
+     * Record the time since the start time in the histogram named by the name followed by the suffix. The name is
+     * only put together while metrics are on.
+     */
+    public static void record(String name, String suffix, long startNanos) {
+        if (startNanos == 0 || !enabled) {
+            return;
+        }
+        record(name + suffix, startNanos);
+    }
+
+
+    public static void increment(String name) {
+        if (!enabled) {
+            return;
+        }
+        counters.computeIfAbsent(name, key -> new LongAdder()).increment();
+    }
+
+
+    public static void reset() {
+        counters.clear();
+        histograms.clear();
+    }
+
+
+    /**
+     * @return A readable summary of every counter and histogram, sorted by name.
+     */
+    public static String toText() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-32s %8s %10s %10s %10s %10s%n", "Metric", "Count", "Mean ms", "p50 ms", "p99 ms", "Max ms"));
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            builder.append(String.format("%-32s %8d %10.3f %10.3f %10.3f %10.3f%n", entry.getKey(), histogram.getCount(),
+                                         toMillis(histogram.getMeanNanos()), toMillis(histogram.getPercentileNanos(0.5)),
+                                         toMillis(histogram.getPercentileNanos(0.99)), toMillis(histogram.getMaxNanos())));
+        }
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            builder.append(String.format("%-32s %8d%n", entry.getKey(), entry.getValue().sum()));
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * @return Every counter and histogram as a JSON object, so runs can be compared.
+     */
+    public static String toJson() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\n  \"counters\": {");
+        boolean first = true;
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            builder.append(first ? "\n" : ",\n");
+            builder.append("    \"").append(entry.getKey()).append("\": ").append(entry.getValue().sum());
+            first = false;
+        }
+        builder.append(first ? "},\n" : "\n  },\n");
+
+        builder.append("  \"histograms\": {");
+        first = true;
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            builder.append(first ? "\n" : ",\n");
+            builder.append("    \"").append(entry.getKey()).append("\": {");
+            builder.append("\"count\": ").append(histogram.getCount());
+            builder.append(", \"meanNanos\": ").append(histogram.getMeanNanos());
+            builder.append(", \"p50Nanos\": ").append(histogram.getPercentileNanos(0.5));
+            builder.append(", \"p99Nanos\": ").append(histogram.getPercentileNanos(0.99));
+            builder.append(", \"maxNanos\": ").append(histogram.getMaxNanos());
+            builder.append('}');
+            first = false;
+        }
+        builder.append(first ? "}\n" : "\n  }\n");
+        builder.append("}\n");
+        return builder.toString();
+    }
+
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+
+    /**
+     * A latency histogram with power of two microsecond buckets. Percentiles are the upper bound of their bucket.
+     */
+    private static class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+
+        void add(long nanos) {
+            long micros = nanos / 1000;
+            int bucket = micros <= 0 ? 0 : Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1);
+            buckets.incrementAndGet(bucket);
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        long getCount() {
+            return count.sum();
+        }
+
+        long getMeanNanos() {
+            long count = getCount();
+            return count == 0 ? 0 : totalNanos.sum() / count;
+        }
+
+        long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        long getPercentileNanos(double percentile) {
+            long count = getCount();
+            long target = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+                seen += buckets.get(i);
+                if (seen >= target && seen > 0) {
+                    return Math.min((1L << i) * 1000, getMaxNanos());
+                }
+            }
+            return getMaxNanos();
+        }
+    }
+}
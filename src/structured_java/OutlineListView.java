@@ -0,0 +1,133 @@
+package structured_java;
+
+import javafx.beans.binding.Bindings;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A virtualized list of outline rows. Rows are only built for the cells that are currently visible, and cells are
+ * reused for other rows while scrolling. So the list keeps which index has the focus and whether it is being edited,
+ * and shows that state on the row again whenever a cell renders the index.
+ */
+public class OutlineListView<S extends ClassSnapshot.MemberSnapshot<?>, R extends OutlineRow<S>> extends ListView<S> {
+
+    private static final double ESTIMATED_ROW_HEIGHT = 45;
+
+    private final RowStateRenderer<R> rowStateRenderer;
+    private final Map<Integer, OutlineCell> cellsByIndex = new HashMap<>();
+    private int focusedIndex = -1;
+    private boolean editing;
+
+
+    public OutlineListView(Function<S, R> rowBuilder, RowStateRenderer<R> rowStateRenderer) {
+        this.rowStateRenderer = rowStateRenderer;
+        setCellFactory(listView -> new OutlineCell(rowBuilder));
+
+        // Ask for enough height to show every row so small classes don't leave empty space,
+        // the parent shrinks the list when there isn't enough room.
+        prefHeightProperty().bind(Bindings.size(getItems()).multiply(ESTIMATED_ROW_HEIGHT).add(2));
+    }
+
+
+    /**
+     * @return The row at the given index, or null if no cell renders it, e.g. because it is scrolled out of view.
+     */
+    public R getRow(int index) {
+        OutlineCell cell = cellsByIndex.get(index);
+        return cell == null ? null : cell.getRow();
+    }
+
+
+    /**
+     * Move the focus to the row at the given index, or take it away from the list with an index outside of it. The row
+     * is only scrolled into view when the focus moves to it.
+     * @param editing Whether the focused row is being edited.
+     */
+    public void setFocusedIndex(int index, boolean editing) {
+        int newIndex = index >= 0 && index < getItems().size() ? index : -1;
+        boolean newEditing = newIndex >= 0 && editing;
+        if (newIndex == focusedIndex && newEditing == this.editing) {
+            return;
+        }
+        int oldIndex = focusedIndex;
+        focusedIndex = newIndex;
+        this.editing = newEditing;
+
+        // The rows that aren't rendered get their state once a cell renders them.
+        showRowState(oldIndex);
+        if (newIndex != oldIndex && newIndex >= 0) {
+            if (!cellsByIndex.containsKey(newIndex)) {
+                scrollTo(newIndex);
+                layout();
+            }
+            showRowState(newIndex);
+        }
+    }
+
+
+    private void showRowState(int index) {
+        R row = getRow(index);
+        if (row != null) {
+            rowStateRenderer.render(row, index == focusedIndex, index == focusedIndex && editing);
+        }
+    }
+
+
+    /**
+     * Shows on a row whether it has the focus and whether it is being edited.
+     */
+    public interface RowStateRenderer<R> {
+
+        void render(R row, boolean focused, boolean editing);
+    }
+
+
+    private class OutlineCell extends ListCell<S> {
+
+        private final Function<S, R> rowBuilder;
+        private R row;
+
+
+        OutlineCell(Function<S, R> rowBuilder) {
+            this.rowBuilder = rowBuilder;
+        }
+
+        R getRow() {
+            return row;
+        }
+
+        @Override
+        public void updateIndex(int index) {
+            // Keep track of which cell renders which index.
+            cellsByIndex.remove(getIndex(), this);
+            super.updateIndex(index);
+            if (index >= 0) {
+                cellsByIndex.put(index, this);
+            }
+        }
+
+        @Override
+        protected void updateItem(S item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                row = null;
+                setGraphic(null);
+                return;
+            }
+
+            // Only build a new row if the cell now shows a different member or the member changed.
+            if (row == null || !row.getSnapshot().equals(item)) {
+                row = rowBuilder.apply(item);
+                setGraphic(row.getRowBox());
+            }
+
+            // The row may have been rendered at another index before.
+            boolean focused = getIndex() == focusedIndex;
+            rowStateRenderer.render(row, focused, focused && editing);
+        }
+    }
+}
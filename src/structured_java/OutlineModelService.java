@@ -0,0 +1,282 @@
+package structured_java;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the outline models of the most recently shown files and which class of the current file is shown. The
+ * service's lock is never held during a read action, so it can't deadlock with the read lock.
+ */
+public class OutlineModelService {
+
+    public static final int MAX_CACHED_FILES = 8;
+
+    private final Project project;
+    private final Map<VirtualFile, OutlineModel> models = new LinkedHashMap<VirtualFile, OutlineModel>(MAX_CACHED_FILES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<VirtualFile, OutlineModel> eldest) {
+            return size() > MAX_CACHED_FILES;
+        }
+    };
+    private VirtualFile currentFile;
+    private PsiClass openedInnerClass;
+
+
+    public OutlineModelService(Project project) {
+        this.project = project;
+    }
+
+
+    public static OutlineModelService getInstance(Project project) {
+        return ServiceManager.getService(project, OutlineModelService.class);
+    }
+
+
+    // The selected file in the editor unless another one was set.
+    public synchronized VirtualFile getCurrentFile() {
+        if (currentFile == null || !currentFile.isValid()) {
+            VirtualFile[] selectedFiles = FileEditorManager.getInstance(project).getSelectedFiles();
+            currentFile = selectedFiles.length > 0 ? selectedFiles[0] : null;
+        }
+        return currentFile;
+    }
+
+
+    public synchronized void setCurrentFile(VirtualFile file) {
+        if (!Objects.equals(file, currentFile)) {
+            openedInnerClass = null;
+        }
+        currentFile = file;
+    }
+
+
+    // Null if the file the outline follows isn't a Java file with a class.
+    public OutlineModel getCurrentModel() {
+        VirtualFile file = getCurrentFile();
+        return file == null ? null : getModel(file);
+    }
+
+
+    // Null if the current file isn't a Java file with a class.
+    public PsiClass getCurrentClass() {
+        ClassSnapshot snapshot = getCurrentClassSnapshot();
+        return snapshot == null ? null : snapshot.getPsiClass();
+    }
+
+
+    // The opened inner class if there is one, otherwise the selected top level class.
+    public ClassSnapshot getCurrentClassSnapshot() {
+        OutlineModel model = getCurrentModel();
+        if (model == null) {
+            return null;
+        }
+        PsiClass innerClass = getOpenedInnerClass(model);
+        return innerClass == null ? model.getSelectedClass() : model.getInnerClassSnapshot(innerClass);
+    }
+
+
+    // Show the outline of an inner class of the shown class instead.
+    public synchronized void openInnerClass(PsiClass innerClass) {
+        openedInnerClass = innerClass;
+    }
+
+
+    // Returns whether an inner class was open.
+    public boolean closeInnerClass() {
+        OutlineModel model = getCurrentModel();
+        PsiClass innerClass = model == null ? null : getOpenedInnerClass(model);
+        if (innerClass == null) {
+            return false;
+        }
+        PsiClass containingClass = TimedActions.computeReadAction(Metrics.OUTLINE_STATE_READ, innerClass::getContainingClass);
+        PsiClass classToOpen = model.getSelectedClass().getPsiClass().equals(containingClass) ? null : containingClass;
+        replaceOpenedInnerClass(innerClass, classToOpen);
+        return true;
+    }
+
+
+    // Null if the opened inner class doesn't exist any more or isn't in the selected top level class.
+    private PsiClass getOpenedInnerClass(OutlineModel model) {
+        PsiClass innerClass;
+        synchronized (this) {
+            innerClass = openedInnerClass;
+        }
+        if (innerClass == null) {
+            return null;
+        }
+        PsiClass selectedClass = model.getSelectedClass().getPsiClass();
+        boolean stillInSelectedClass = TimedActions.computeReadAction(Metrics.OUTLINE_STATE_READ, () ->
+            innerClass.isValid() && PsiTreeUtil.isAncestor(selectedClass, innerClass, true));
+        if (!stillInSelectedClass) {
+            replaceOpenedInnerClass(innerClass, null);
+            return null;
+        }
+        return innerClass;
+    }
+
+
+    // Only replace the opened inner class if no other one was opened in the meantime.
+    private synchronized void replaceOpenedInnerClass(PsiClass innerClass, PsiClass newInnerClass) {
+        if (openedInnerClass == innerClass) {
+            openedInnerClass = newInnerClass;
+        }
+    }
+
+
+    // Null if they weren't loaded since the current file last changed.
+    public List<ClassSnapshot.InnerClassSnapshot> getInheritedInnerClasses(PsiClass psiClass) {
+        OutlineModel model = getCurrentModel();
+        return model == null ? null : model.inheritedInnerClasses.get(psiClass);
+    }
+
+
+    // Resolves the whole supertype hierarchy once indexing is done, so not for the EDT.
+    public List<ClassSnapshot.InnerClassSnapshot> loadInheritedInnerClasses(PsiClass psiClass) {
+        List<ClassSnapshot.InnerClassSnapshot> inheritedInnerClasses = TimedActions.computeReadActionInSmartMode(project, Metrics.INHERITED_CLASSES_READ, () ->
+            psiClass.isValid() ? ClassSnapshot.captureInheritedInnerClasses(psiClass) : Collections.<ClassSnapshot.InnerClassSnapshot>emptyList());
+        OutlineModel model = getCurrentModel();
+        if (model != null) {
+            model.inheritedInnerClasses.put(psiClass, inheritedInnerClasses);
+        }
+        return inheritedInnerClasses;
+    }
+
+
+    // Reads the classes again only if the file's PSI changed. Not for the EDT if the file may have to be read.
+    public OutlineModel getModel(VirtualFile file) {
+        OutlineModel cachedModel = getCachedModel(file);
+        OutlineModel readModel = TimedActions.computeReadAction(Metrics.OUTLINE_MODEL_READ, () -> {
+            PsiFile psiFile = file.isValid() ? PsiManager.getInstance(project).findFile(file) : null;
+            if (!(psiFile instanceof PsiJavaFile) || ((PsiJavaFile) psiFile).getClasses().length == 0) {
+                return null;
+            }
+
+            // The document can change before the PSI is committed, so the model is tied to the last committed stamp.
+            PsiDocumentManager documentManager = PsiDocumentManager.getInstance(project);
+            Document document = documentManager.getDocument(psiFile);
+            long modificationStamp = document == null ? psiFile.getModificationStamp() : documentManager.getLastCommittedStamp(document);
+            if (cachedModel != null && cachedModel.getModificationStamp() == modificationStamp) {
+                return cachedModel;
+            }
+
+            List<ClassSnapshot> classes = new ArrayList<>();
+            for (PsiClass psiClass : ((PsiJavaFile) psiFile).getClasses()) {
+                classes.add(ClassSnapshot.captureInReadAction(psiClass));
+            }
+            return new OutlineModel(modificationStamp, classes, 0);
+        });
+        return cacheModel(file, readModel);
+    }
+
+
+    private synchronized OutlineModel getCachedModel(VirtualFile file) {
+        return models.get(file);
+    }
+
+
+    // Keeps a model another thread cached in the meantime if it isn't older.
+    private synchronized OutlineModel cacheModel(VirtualFile file, OutlineModel readModel) {
+        if (readModel == null) {
+            models.remove(file);
+            return null;
+        }
+        OutlineModel cachedModel = models.get(file);
+        if (cachedModel != null && cachedModel.getModificationStamp() >= readModel.getModificationStamp()) {
+            return cachedModel;
+        }
+        int selectedClassIndex = cachedModel == null ? 0 : Math.min(cachedModel.getSelectedClassIndex(), readModel.getClasses().size() - 1);
+        OutlineModel model = new OutlineModel(readModel, selectedClassIndex);
+        models.put(file, model);
+        return model;
+    }
+
+
+    // Show another top level class of the current file in the outline.
+    public void selectClass(int classIndex) {
+        // Bring the model of the file up to date before the lock is taken.
+        VirtualFile file = getCurrentFile();
+        if (file == null || getModel(file) == null) {
+            return;
+        }
+        synchronized (this) {
+            OutlineModel model = models.get(file);
+            if (model != null && classIndex >= 0 && classIndex < model.getClasses().size()) {
+                models.put(file, new OutlineModel(model, classIndex));
+                openedInnerClass = null;
+            }
+        }
+    }
+
+
+    public synchronized void clear() {
+        models.clear();
+    }
+
+
+    /**
+     * The snapshots of the top level classes of a file at a committed modification stamp.
+     */
+    public static final class OutlineModel {
+
+        private final long modificationStamp;
+        private final List<ClassSnapshot> classes;
+        private final int selectedClassIndex;
+        private final Map<PsiClass, ClassSnapshot> innerClassSnapshots;
+        private final Map<PsiClass, List<ClassSnapshot.InnerClassSnapshot>> inheritedInnerClasses;
+
+
+        OutlineModel(long modificationStamp, List<ClassSnapshot> classes, int selectedClassIndex) {
+            this.modificationStamp = modificationStamp;
+            this.classes = Collections.unmodifiableList(classes);
+            this.selectedClassIndex = selectedClassIndex;
+            this.innerClassSnapshots = new ConcurrentHashMap<>();
+            this.inheritedInnerClasses = new ConcurrentHashMap<>();
+        }
+
+        // Copy the model with another class selected, sharing the snapshots of the file's classes.
+        OutlineModel(OutlineModel model, int selectedClassIndex) {
+            this.modificationStamp = model.modificationStamp;
+            this.classes = model.classes;
+            this.selectedClassIndex = selectedClassIndex;
+            this.innerClassSnapshots = model.innerClassSnapshots;
+            this.inheritedInnerClasses = model.inheritedInnerClasses;
+        }
+
+        ClassSnapshot getInnerClassSnapshot(PsiClass innerClass) {
+            return innerClassSnapshots.computeIfAbsent(innerClass, ClassSnapshot::capture);
+        }
+
+        public long getModificationStamp() {
+            return modificationStamp;
+        }
+
+        public List<ClassSnapshot> getClasses() {
+            return classes;
+        }
+
+        public int getSelectedClassIndex() {
+            return selectedClassIndex;
+        }
+
+        public ClassSnapshot getSelectedClass() {
+            return classes.get(selectedClassIndex);
+        }
+    }
+}
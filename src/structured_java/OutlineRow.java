@@ -0,0 +1,68 @@
+package structured_java;
+
+import javafx.scene.Node;
+import javafx.scene.layout.HBox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rendered row of the class outline. The row can be reused as long as the snapshot of its element doesn't change.
+ * A row shows read-only text until it is edited, and the editing controls are only created for the row being edited.
+ */
+public class OutlineRow<S extends ClassSnapshot.MemberSnapshot<?>> {
+
+    private final S snapshot;
+    private final HBox rowBox;
+    private List<Node> readOnlyNodes;
+
+
+    public OutlineRow(S snapshot, HBox rowBox) {
+        this.snapshot = snapshot;
+        this.rowBox = rowBox;
+    }
+
+    public S getSnapshot() {
+        return snapshot;
+    }
+
+    public HBox getRowBox() {
+        return rowBox;
+    }
+
+    public boolean isEditing() {
+        return readOnlyNodes != null;
+    }
+
+
+    /**
+     * Replace the read-only text of the row with the editing controls.
+     */
+    public void showEditors(List<Node> editors) {
+        if (isEditing()) {
+            return;
+        }
+        readOnlyNodes = new ArrayList<>(rowBox.getChildren());
+        rowBox.getChildren().setAll(editors);
+    }
+
+
+    /**
+     * Show the read-only text of the row again and drop the editing controls.
+     */
+    public void hideEditors() {
+        if (!isEditing()) {
+            return;
+        }
+        rowBox.getChildren().setAll(readOnlyNodes);
+        readOnlyNodes = null;
+        clearEditors();
+    }
+
+
+    /**
+     * Forget the editing controls of the row once they are hidden.
+     */
+    protected void clearEditors() {
+    }
+}
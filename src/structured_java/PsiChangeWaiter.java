@@ -0,0 +1,97 @@
+package structured_java;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiTreeChangeAdapter;
+import com.intellij.psi.PsiTreeChangeEvent;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Waits for the PSI to reach some state by listening to PSI tree change events instead of polling.
+ */
+public class PsiChangeWaiter {
+
+    public static final long DEFAULT_TIMEOUT_MS = 5000;
+
+
+    public static CompletableFuture<Void> waitForCondition(PsiElement element, Computable<Boolean> condition) {
+        return waitForCondition(element, condition, DEFAULT_TIMEOUT_MS);
+    }
+
+
+    /**
+     * Get a future that completes as soon as the condition holds. The condition is checked once immediately and
+     * then after every PSI change in the project of the element. The future fails if the condition throws, for
+     * example because the element became invalid, or if the condition still doesn't hold after the timeout.
+     */
+    public static CompletableFuture<Void> waitForCondition(PsiElement element, Computable<Boolean> condition, long timeoutMs) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        long start = Metrics.start();
+        Project project = TimedActions.computeReadAction(Metrics.PSI_CHANGE_CHECK, element::getProject);
+
+        // Check the condition after every change to the PSI tree.
+        Disposable listenerDisposable = Disposer.newDisposable();
+        PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+            @Override
+            public void childAdded(@NotNull PsiTreeChangeEvent event) {
+                checkCondition(condition, future);
+            }
+
+            @Override
+            public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+                checkCondition(condition, future);
+            }
+
+            @Override
+            public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+                checkCondition(condition, future);
+            }
+
+            @Override
+            public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+                checkCondition(condition, future);
+            }
+        }, listenerDisposable);
+
+        // Fail the future if the condition doesn't hold in time.
+        ScheduledFuture<?> timeout = AppExecutorUtil.getAppScheduledExecutorService().schedule(() ->
+            future.completeExceptionally(new TimeoutException("The PSI did not change within " + timeoutMs + " ms")),
+            timeoutMs, TimeUnit.MILLISECONDS);
+
+        // Stop listening once the future is done either way.
+        future.whenComplete((result, error) -> {
+            timeout.cancel(false);
+            Disposer.dispose(listenerDisposable);
+            Metrics.record(Metrics.PSI_CHANGE_WAIT, start);
+        });
+
+        // The change may already be reflected in the PSI, e.g. after a PSI operation or a document commit.
+        checkCondition(condition, future);
+
+        return future;
+    }
+
+
+    private static void checkCondition(Computable<Boolean> condition, CompletableFuture<Void> future) {
+        if (future.isDone()) {
+            return;
+        }
+        try {
+            if (TimedActions.computeReadAction(Metrics.PSI_CHANGE_CHECK, condition)) {
+                future.complete(null);
+            }
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+}
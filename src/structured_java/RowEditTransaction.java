@@ -0,0 +1,146 @@
+package structured_java;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.*;
+import com.intellij.util.IncorrectOperationException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Gathers the changes made to one row of the class outline and writes them to the source together, in one write
+ * action and one undoable command. A rename searches for the references of the element in the background first and
+ * the other changes are made in the same command as the rename.
+ */
+public class RowEditTransaction {
+
+    private static final Logger LOG = Logger.getInstance(RowEditTransaction.class);
+
+    private final Project project;
+    private final PsiNamedElement element;
+    private final String elementName;
+    private final List<Runnable> edits = new ArrayList<>();
+    private String oldName;
+    private String newName;
+
+
+    /**
+     * @param elementName The name of the element as the row shows it, so it doesn't have to be read from the PSI
+     *                    outside of a read action.
+     */
+    public RowEditTransaction(Project project, PsiNamedElement element, String elementName) {
+        this.project = project;
+        this.element = element;
+        this.elementName = elementName;
+    }
+
+
+    public void setName(String oldName, String newName) {
+        if (!newName.equals(oldName)) {
+            this.oldName = oldName;
+            this.newName = newName;
+        }
+    }
+
+
+    /**
+     * Change the type of the variable if the type text changed.
+     */
+    public void setType(PsiVariable variable, String oldType, String newType) {
+        if (newType.equals(oldType)) {
+            return;
+        }
+        edits.add(() -> {
+            PsiTypeElement typeElement = variable.getTypeElement();
+            if (typeElement != null) {
+                typeElement.replace(PsiElementFactory.getInstance(project).createTypeElementFromText(newType, variable));
+            }
+        });
+    }
+
+
+    /**
+     * Change the initial value of the variable if it changed. An empty initial value removes the initializer.
+     */
+    public void setInitializer(PsiVariable variable, String oldInitializer, String newInitializer) {
+        if (newInitializer.equals(oldInitializer)) {
+            return;
+        }
+        edits.add(() -> {
+            PsiExpression initializer = null;
+            if (!newInitializer.trim().isEmpty()) {
+                initializer = PsiElementFactory.getInstance(project).createExpressionFromText(newInitializer, variable);
+            }
+            variable.setInitializer(initializer);
+        });
+    }
+
+
+    /**
+     * Replace the modifiers of the element if they changed.
+     */
+    public void setModifiers(PsiModifierListOwner owner, List<String> oldModifiers, List<String> newModifiers) {
+        if (newModifiers.equals(oldModifiers)) {
+            return;
+        }
+        edits.add(() -> {
+            PsiModifierList modifierList = owner.getModifierList();
+            if (modifierList == null) {
+                return;
+            }
+
+            // Only touch the modifiers that are added or removed.
+            Set<String> newModifierSet = new HashSet<>(newModifiers);
+            for (String modifier : oldModifiers) {
+                if (!newModifierSet.contains(modifier)) {
+                    modifierList.setModifierProperty(modifier, false);
+                }
+            }
+            for (String modifier : newModifiers) {
+                modifierList.setModifierProperty(modifier, true);
+            }
+        });
+    }
+
+
+    public boolean isEmpty() {
+        return newName == null && edits.isEmpty();
+    }
+
+
+    /**
+     * Write the changes to the source.
+     * @param onCommitted Run once the changes are in the source. After a rename it runs on the event dispatch thread,
+     *                    otherwise on the thread that called commit, so it should hand its work over to the thread it
+     *                    needs itself. Not run if nothing changed or the rename was abandoned.
+     */
+    public void commit(Runnable onCommitted) {
+        if (isEmpty()) {
+            return;
+        }
+
+        // A rename needs the references of the element, so it makes the other edits once they are found.
+        if (newName != null) {
+            new BackgroundRenameTask(project, element, oldName, newName, this::applyEdits, onCommitted).queue();
+            return;
+        }
+
+        TimedActions.runWriteCommand(Metrics.ROW_COMMIT, WriteCommandAction.writeCommandAction(project).withName("Edit " + elementName), this::applyEdits);
+        onCommitted.run();
+    }
+
+
+    private void applyEdits() {
+        for (Runnable edit : edits) {
+            try {
+                edit.run();
+            } catch (IncorrectOperationException e) {
+                LOG.warn("A change to " + elementName + " could not be made", e);
+            }
+        }
+    }
+}
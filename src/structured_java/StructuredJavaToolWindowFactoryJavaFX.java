@@ -1,10 +1,17 @@
 package structured_java;
 
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerEvent;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.openapi.wm.ex.ToolWindowManagerListener;
 import com.intellij.psi.PsiMethod;
+import com.intellij.ui.content.ContentFactory;
+import com.intellij.util.messages.MessageBusConnection;
 import javafx.application.Platform;
 import javafx.embed.swing.JFXPanel;
 import javafx.scene.input.KeyEvent;
@@ -21,10 +28,11 @@ public class StructuredJavaToolWindowFactoryJavaFX implements ToolWindowFactory
     private Project project;
     private ClassOutlineScene classOutlineScene;
     private MethodEditingScene methodEditingScene;
+    private MethodEditingSceneCache methodEditingSceneCache;
+    private JPanel outlinePanel;
     private JFXPanel fxPanel;
     private Font defaultUiFont;
-    private Font defaultEditorFont;
-    private Color defaultEditorBackgroundColor;
+    private volatile VirtualFile requestedFile;
 
     public Project getProject() {
         return project;
@@ -43,39 +51,147 @@ public class StructuredJavaToolWindowFactoryJavaFX implements ToolWindowFactory
     }
 
     public Font getDefaultEditorFont() {
-        return defaultEditorFont;
+        return EditorStyleService.getInstance(project).getEditorFont();
     }
 
     public Color getDefaultEditorBackgroundColor() {
-        return defaultEditorBackgroundColor;
+        return EditorStyleService.getInstance(project).getEditorBackgroundColor();
     }
 
 
     @Override
     public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
         this.project = project;
+        methodEditingSceneCache = new MethodEditingSceneCache(project, project);
+
+        // The outline is only built the first time the tool window is shown, until then the tab holds a placeholder.
+        outlinePanel = new JPanel(new BorderLayout());
+        outlinePanel.add(new JLabel("Loading...", SwingConstants.CENTER), BorderLayout.CENTER);
+        if (toolWindow.isVisible()) {
+            startOutline();
+        }
+        else {
+            MessageBusConnection connection = project.getMessageBus().connect(project);
+            connection.subscribe(ToolWindowManagerListener.TOPIC, new ToolWindowManagerListener() {
+                @Override
+                public void stateChanged() {
+                    if (toolWindow.isVisible() && fxPanel == null) {
+                        connection.disconnect();
+                        startOutline();
+                    }
+                }
+            });
+        }
+
+        // Follow the file selected in the editor.
+        project.getMessageBus().connect(project).subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, new FileEditorManagerListener() {
+            @Override
+            public void selectionChanged(@NotNull FileEditorManagerEvent event) {
+                showFile(event.getNewFile());
+            }
+        });
+
+        // The outline and the method editing scenes share the first tab, the second tab shows the metrics.
+        ContentFactory contentFactory = ContentFactory.SERVICE.getInstance();
+        toolWindow.getContentManager().addContent(contentFactory.createContent(outlinePanel, "Outline", false));
+        toolWindow.getContentManager().addContent(contentFactory.createContent(new DiagnosticsPanel(project), "Diagnostics", false));
+    }
+
+
+    /**
+     * Start the JavaFX runtime and build the class outline scene. The fonts and the outline model are loaded in the
+     * background once indexing is done, and the scene is built from them on the JavaFX thread.
+     */
+    private void startOutline() {
+        // Creating the panel starts the JavaFX runtime, which has to happen on the event dispatch thread.
         fxPanel = new JFXPanel();
-        JComponent component = toolWindow.getComponent();
-        defaultUiFont = Utilities.getDefaultFont(project);
-        defaultEditorFont = Utilities.getDefaultEditorFont(project);
-        defaultEditorBackgroundColor = Utilities.getDefaultEditorBackgroundColor(project);
-
-        // Start the Structured Java tool window UI.
-        DumbService.getInstance(project).smartInvokeLater(() -> Platform.runLater(() -> {
-            // Build the scenes and start on the class outline scene.
-            methodEditingScene = new MethodEditingScene(new VBox(), this);
-            classOutlineScene = new ClassOutlineScene(new VBox(), this);
-            setSceneToClassOutlineScene();
-        }));
+        outlinePanel.removeAll();
+        outlinePanel.add(fxPanel, BorderLayout.CENTER);
+        outlinePanel.revalidate();
+
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            defaultUiFont = Utilities.getDefaultFont(project);
+            EditorStyleService.getInstance(project).getEditorFont();
+            EditorStyleService.getInstance(project).getEditorBackgroundColor();
+
+            // Reading the outline model takes its own read action, so only the wait for indexing is done here.
+            long start = Metrics.start();
+            DumbService.getInstance(project).waitForSmartMode();
+            Metrics.record(Metrics.SMART_MODE_WAIT, start);
+            OutlineModelService.getInstance(project).getCurrentModel();
+
+            // Build the class outline scene and start on it.
+            Platform.runLater(() -> {
+                classOutlineScene = new ClassOutlineScene(new VBox(), this);
+                setSceneToClassOutlineScene();
+            });
+        });
+    }
+
 
-        component.getParent().add(fxPanel);
+    /**
+     * Show the outline of the file. The outline is kept as it is if the file isn't a Java file with a class.
+     */
+    private void showFile(VirtualFile file) {
+        // Until the tool window is first shown the outline starts from whichever file is selected then.
+        if (fxPanel == null) {
+            return;
+        }
+
+        OutlineModelService outlineModelService = OutlineModelService.getInstance(project);
+        if (file == null || file.equals(outlineModelService.getCurrentFile())) {
+            return;
+        }
+        requestedFile = file;
+
+        // Reading the classes of a large file takes a while, so the model is read in the background like at startup.
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            // Skip the file if another file was selected while its model was read.
+            if (outlineModelService.getModel(file) == null || file != requestedFile) {
+                return;
+            }
+            outlineModelService.setCurrentFile(file);
+            Platform.runLater(this::showCurrentFile);
+        });
+    }
+
+
+    /**
+     * Show the outline of the current file on the JavaFX thread, once its model was read.
+     */
+    private void showCurrentFile() {
+        // The class outline scene is built once indexing is done.
+        if (classOutlineScene == null) {
+            return;
+        }
+
+        // A method being edited belongs to the previous file, so go back to the outline.
+        classOutlineScene.resetKeyboardFocus();
+        if (fxPanel.getScene() != classOutlineScene) {
+            setSceneToClassOutlineScene();
+        }
+        else {
+            classOutlineScene.buildClassOutlineScene();
+        }
     }
     
 
     public void setSceneToClassOutlineScene() {
+        // The method editing scene is only created once a method is opened.
+        if (methodEditingScene != null) {
+            // Don't lose any edits to the method text that haven't been written to the source yet.
+            methodEditingScene.flushPendingSourceChanges();
+            methodEditingScene.endEditingSession();
+
+            // Keep the scene of an existing method so it doesn't have to be rebuilt if the method is opened again.
+            if (!methodEditingScene.isForAddingNewMethod()) {
+                methodEditingSceneCache.put(methodEditingScene);
+            }
+            methodEditingScene.removeEventHandler(KeyEvent.KEY_PRESSED, methodEditingScene);
+        }
+
         classOutlineScene.buildClassOutlineScene();
         fxPanel.setScene(classOutlineScene);
-        methodEditingScene.removeEventHandler(KeyEvent.KEY_PRESSED, methodEditingScene);
     }
 
 
@@ -86,7 +202,17 @@ public class StructuredJavaToolWindowFactoryJavaFX implements ToolWindowFactory
 
 
     public void setSceneToMethodEditingScene(PsiMethod method) {
-        methodEditingScene = new MethodEditingScene(new VBox(), method, this);
+        // Reuse the scene of the method if it is still up to date with the source.
+        MethodEditingScene cachedScene = methodEditingSceneCache.get(method);
+        if (cachedScene != null) {
+            methodEditingScene = cachedScene;
+            methodEditingScene.addEventHandler(KeyEvent.KEY_PRESSED, methodEditingScene);
+        }
+
+        // Otherwise build a new scene.
+        else {
+            methodEditingScene = new MethodEditingScene(new VBox(), method, this);
+        }
         switchToMethodEditingScene();
     }
 
@@ -5,8 +5,10 @@ import javafx.scene.text.Text;
 import javafx.scene.text.TextAlignment;
 import javafx.scene.text.TextBoundsType;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TextUtils {
 
@@ -15,6 +17,16 @@ public class TextUtils {
     static final double DEFAULT_LINE_SPACING;
     static final String DEFAULT_TEXT;
     static final TextBoundsType DEFAULT_BOUNDS_TYPE;
+    private static final int MAX_CACHED_TEXT_WIDTHS = 2048;
+    private static final Map<Font, Double> CHARACTER_WIDTH_CACHE = new ConcurrentHashMap<>();
+
+    // The least recently used measurement is dropped once the cache is full.
+    private static final Map<TextWidthKey, Double> TEXT_WIDTH_CACHE = new LinkedHashMap<TextWidthKey, Double>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TextWidthKey, Double> eldest) {
+            return size() > MAX_CACHED_TEXT_WIDTHS;
+        }
+    };
     static {
         helper = new Text();
         DEFAULT_WRAPPING_WIDTH = helper.getWrappingWidth();
@@ -24,27 +36,126 @@ public class TextUtils {
     }
 
 
-    public static double computeTextWidth(Font font, String text, double help0) {
-        helper.setText(text);
-        helper.setFont(font);
+    /**
+     * Compute the width of the text in the font when it is wrapped at the maximum width. Measurements are cached, and
+     * single line text in a monospaced font is measured from the width of one character without a layout pass.
+     */
+    public static double computeTextWidth(Font font, String text, double maxWidth) {
+        // Every character of a monospaced font has the same advance, so the width of a line is a multiplication.
+        double characterWidth = getMonospacedCharacterWidth(font);
+        if (characterWidth > 0 && isSingleLineWithoutTabs(text)) {
+            double width = text.length() * characterWidth;
+            if (width <= maxWidth) {
+                return Math.ceil(width);
+            }
+        }
+
+        TextWidthKey key = new TextWidthKey(font, text, maxWidth);
+        synchronized (TEXT_WIDTH_CACHE) {
+            Double cachedWidth = TEXT_WIDTH_CACHE.get(key);
+            if (cachedWidth != null) {
+                return cachedWidth;
+            }
+        }
+
+        double width = measureTextWidth(font, text, maxWidth);
+        synchronized (TEXT_WIDTH_CACHE) {
+            TEXT_WIDTH_CACHE.put(key, width);
+        }
+        return width;
+    }
+
+
+    /**
+     * Lay out the text with the shared helper to measure its width.
+     */
+    private static double measureTextWidth(Font font, String text, double maxWidth) {
+        synchronized (helper) {
+            helper.setText(text);
+            helper.setFont(font);
+
+            helper.setWrappingWidth(0.0D);
+            helper.setLineSpacing(0.0D);
+            double d = Math.min(helper.prefWidth(-1.0D), maxWidth);
+            helper.setWrappingWidth((int) Math.ceil(d));
+            d = Math.ceil(helper.getLayoutBounds().getWidth());
+
+            helper.setWrappingWidth(DEFAULT_WRAPPING_WIDTH);
+            helper.setLineSpacing(DEFAULT_LINE_SPACING);
+            helper.setText(DEFAULT_TEXT);
+            helper.setTextAlignment(TextAlignment.CENTER);
+            return d;
+        }
+    }
+
+
+    /**
+     * @return The advance of one character if the font is monospaced, otherwise 0.
+     */
+    private static double getMonospacedCharacterWidth(Font font) {
+        return CHARACTER_WIDTH_CACHE.computeIfAbsent(font, f -> {
+            // A narrow and a wide character are the same width only in a monospaced font.
+            double narrowWidth = measureUnwrappedWidth(f, "i");
+            double wideWidth = measureUnwrappedWidth(f, "W");
+            return narrowWidth > 0 && narrowWidth == wideWidth ? narrowWidth : 0;
+        });
+    }
+
+
+    private static double measureUnwrappedWidth(Font font, String text) {
+        synchronized (helper) {
+            helper.setText(text);
+            helper.setFont(font);
+            helper.setWrappingWidth(0.0D);
+            double width = helper.getLayoutBounds().getWidth();
+            helper.setWrappingWidth(DEFAULT_WRAPPING_WIDTH);
+            helper.setText(DEFAULT_TEXT);
+            return width;
+        }
+    }
 
-        helper.setWrappingWidth(0.0D);
-        helper.setLineSpacing(0.0D);
-        double d = Math.min(helper.prefWidth(-1.0D), help0);
-        helper.setWrappingWidth((int) Math.ceil(d));
-        d = Math.ceil(helper.getLayoutBounds().getWidth());
 
-        helper.setWrappingWidth(DEFAULT_WRAPPING_WIDTH);
-        helper.setLineSpacing(DEFAULT_LINE_SPACING);
-        helper.setText(DEFAULT_TEXT);
-        helper.setTextAlignment(TextAlignment.CENTER);
-        return d;
+    private static boolean isSingleLineWithoutTabs(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\t') {
+                return false;
+            }
+        }
+        return true;
     }
 
 
-    public static int indexOf(String patternString, String stringToSearchIn) {
-        Pattern pattern = Pattern.compile(patternString);
-        Matcher matcher = pattern.matcher(stringToSearchIn);
-        return matcher.find() ? matcher.start() : -1;
+    private static final class TextWidthKey {
+
+        private final Font font;
+        private final String text;
+        private final double maxWidth;
+
+
+        TextWidthKey(Font font, String text, double maxWidth) {
+            this.font = font;
+            this.text = text;
+            this.maxWidth = maxWidth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TextWidthKey)) {
+                return false;
+            }
+            TextWidthKey that = (TextWidthKey) o;
+            return Double.compare(maxWidth, that.maxWidth) == 0 &&
+                   font.equals(that.font) &&
+                   text.equals(that.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(font, text, maxWidth);
+        }
     }
-}
\ No newline at end of file
+}
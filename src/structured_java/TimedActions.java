@@ -0,0 +1,79 @@
+package structured_java;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+
+/**
+ * Read and write actions that record how long they waited for the lock and how long they held it, in the histograms
+ * {@code <name>.wait} and {@code <name>.hold}. Nested actions run without a wrapper.
+ */
+public class TimedActions {
+
+    public static final String WAIT_SUFFIX = ".wait";
+    public static final String HOLD_SUFFIX = ".hold";
+
+
+    public static void runReadAction(String name, Runnable action) {
+        long waitStart = Metrics.start();
+        ApplicationManager.getApplication().runReadAction(() -> runTimed(name, waitStart, action));
+    }
+
+
+    public static <T> T computeReadAction(String name, Computable<T> action) {
+        long waitStart = Metrics.start();
+        return ApplicationManager.getApplication().runReadAction((Computable<T>) () -> computeTimed(name, waitStart, action));
+    }
+
+
+    // Waits for indexing to finish first, which counts as part of the wait.
+    public static <T> T computeReadActionInSmartMode(Project project, String name, Computable<T> action) {
+        long waitStart = Metrics.start();
+        return DumbService.getInstance(project).runReadActionInSmartMode((Computable<T>) () -> computeTimed(name, waitStart, action));
+    }
+
+
+    // Cancelled by any write action that wants to start. Returns whether it ran to the end. Not for the EDT.
+    public static boolean runReadActionWithWriteActionPriority(String name, Runnable action, ProgressIndicator indicator) {
+        long waitStart = Metrics.start();
+        return ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(() -> runTimed(name, waitStart, action), indicator);
+    }
+
+
+    public static void runWriteCommand(String name, WriteCommandAction.Builder command, Runnable action) {
+        long waitStart = Metrics.start();
+        command.run(() -> runTimed(name, waitStart, action));
+    }
+
+
+    public static <T> T computeWriteCommand(String name, WriteCommandAction.Builder command, Computable<T> action) {
+        long waitStart = Metrics.start();
+        return command.compute(() -> computeTimed(name, waitStart, action));
+    }
+
+
+    private static void runTimed(String name, long waitStart, Runnable action) {
+        Metrics.record(name, WAIT_SUFFIX, waitStart);
+        long holdStart = Metrics.start();
+        try {
+            action.run();
+        } finally {
+            Metrics.record(name, HOLD_SUFFIX, holdStart);
+        }
+    }
+
+
+    private static <T> T computeTimed(String name, long waitStart, Computable<T> action) {
+        Metrics.record(name, WAIT_SUFFIX, waitStart);
+        long holdStart = Metrics.start();
+        try {
+            return action.compute();
+        } finally {
+            Metrics.record(name, HOLD_SUFFIX, holdStart);
+        }
+    }
+}
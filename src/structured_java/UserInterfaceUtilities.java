@@ -1,10 +1,19 @@
 package structured_java;
 
+import com.intellij.psi.PsiModifier;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Pos;
 import javafx.scene.control.TextField;
 
+import java.util.HashSet;
+import java.util.List;
+
 public class UserInterfaceUtilities {
 
+    // The choices of every modifier dropdown. One read-only list is shared instead of a copy for each dropdown.
+    public static final ObservableList<String> MODIFIER_CHOICES = FXCollections.unmodifiableObservableList(FXCollections.observableArrayList(PsiModifier.MODIFIERS));
+
     public static TextField getField(String field, String fontName, int fontSize) {
         TextField textField = new TextField();
         textField.setStyle(getStyleString(fontName, fontSize));
@@ -30,4 +39,24 @@ public class UserInterfaceUtilities {
     public static String getStyleString(String fontName, int fontSize) {
         return "-fx-font: " + fontSize + "px \"" + fontName + "\";";
     }
+
+
+    /**
+     * Make the list match the desired list by only removing, inserting or moving the elements that differ, so elements
+     * that stay in place are left untouched. Used for the children of a node and for the items of a list view.
+     */
+    public static <T> void reconcileList(ObservableList<T> list, List<? extends T> desiredList) {
+        // Remove the elements that are no longer wanted.
+        list.retainAll(new HashSet<>(desiredList));
+
+        // Insert new elements and move existing ones to their desired position.
+        for (int i = 0; i < desiredList.size(); i++) {
+            T desiredElement = desiredList.get(i);
+            if (i < list.size() && list.get(i).equals(desiredElement)) {
+                continue;
+            }
+            list.remove(desiredElement);
+            list.add(i, desiredElement);
+        }
+    }
 }
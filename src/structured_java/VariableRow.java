@@ -0,0 +1,64 @@
+package structured_java;
+
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
+
+import java.util.Collections;
+import java.util.List;
+
+public class VariableRow extends OutlineRow<ClassSnapshot.FieldSnapshot> {
+
+    private List<ComboBox<String>> modifierBoxes = Collections.emptyList();
+    private TextField typeField;
+    private TextField nameField;
+    private TextField initialValueField;
+    private String originalInitializerText = "";
+
+
+    public VariableRow(ClassSnapshot.FieldSnapshot variable, HBox rowBox) {
+        super(variable, rowBox);
+    }
+
+
+    /**
+     * Set the editing controls of the row. They are only set while the row is being edited.
+     * @param originalInitializerText The initial value the editing started from, or an empty string if there is none.
+     */
+    public void setEditors(List<ComboBox<String>> modifierBoxes, TextField typeField, TextField nameField, TextField initialValueField, String originalInitializerText) {
+        this.modifierBoxes = modifierBoxes;
+        this.typeField = typeField;
+        this.nameField = nameField;
+        this.initialValueField = initialValueField;
+        this.originalInitializerText = originalInitializerText;
+    }
+
+    public List<ComboBox<String>> getModifierBoxes() {
+        return modifierBoxes;
+    }
+
+    public TextField getTypeField() {
+        return typeField;
+    }
+
+    public TextField getNameField() {
+        return nameField;
+    }
+
+    public TextField getInitialValueField() {
+        return initialValueField;
+    }
+
+    public String getOriginalInitializerText() {
+        return originalInitializerText;
+    }
+
+    @Override
+    protected void clearEditors() {
+        modifierBoxes = Collections.emptyList();
+        typeField = null;
+        nameField = null;
+        initialValueField = null;
+        originalInitializerText = "";
+    }
+}
@@ -0,0 +1,261 @@
+package structured_java;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Measures how the outline operations scale with the size of the class, on synthetic classes with a growing number of
+ * fields and methods and some inner classes and enums. The test fails if an operation grows faster between two sizes
+ * than its complexity curve allows.
+ * <p>
+ * The sizes and limits are read from system properties, e.g.
+ * {@code gradle scalingTest -Dstructured_java.scaling.sizes=10,100,1000 -Dstructured_java.scaling.exponent.rename=1.5}
+ * <ul>
+ *     <li>{@code structured_java.scaling.sizes}: the numbers of fields and methods of the classes.</li>
+ *     <li>{@code structured_java.scaling.repeats}: how often each operation is measured per size. The median is used.</li>
+ *     <li>{@code structured_java.scaling.exponent}: the exponent of the complexity curve, 1 for linear.</li>
+ *     <li>{@code structured_java.scaling.exponent.<operation>}: the exponent of one operation.</li>
+ *     <li>{@code structured_java.scaling.slack}: how many times slower than the curve an operation may be.</li>
+ *     <li>{@code structured_java.scaling.floorMillis}: times below this are measured against the floor instead, since
+ *     they are mostly noise.</li>
+ * </ul>
+ */
+public class OutlineScalingTest extends LightJavaCodeInsightFixtureTestCase {
+
+    private static final String PROPERTY_PREFIX = "structured_java.scaling.";
+    private static final String BUILD = "build";
+    private static final String ADD_VARIABLE = "addVariable";
+    private static final String ADD_METHOD = "addMethod";
+    private static final String DELETE = "delete";
+    private static final String RENAME = "rename";
+    private static final long RENAME_TIMEOUT_MILLIS = 60_000;
+
+    private final List<Integer> sizes = getSizes();
+    private final int repeats = Integer.getInteger(PROPERTY_PREFIX + "repeats", 5);
+    private final double slack = getDouble(PROPERTY_PREFIX + "slack", 2.0);
+    private final long floorNanos = TimeUnit.MICROSECONDS.toNanos((long) (getDouble(PROPERTY_PREFIX + "floorMillis", 1.0) * 1000));
+
+    private PsiClass currentClass;
+    private int renameCount;
+
+
+    public void testOperationsScaleWithClassSize() {
+        // The median time of every operation at every size, in the order the sizes are measured.
+        Map<String, List<Long>> times = new LinkedHashMap<>();
+        for (String operation : Arrays.asList(BUILD, ADD_VARIABLE, ADD_METHOD, DELETE, RENAME)) {
+            times.put(operation, new ArrayList<>());
+        }
+
+        for (int size : sizes) {
+            PsiJavaFile file = (PsiJavaFile) myFixture.configureByText("Synthetic" + size + ".java", syntheticClassText(size));
+            currentClass = file.getClasses()[0];
+            renameCount = 0;
+
+            times.get(BUILD).add(median(this::measureBuild));
+            times.get(ADD_VARIABLE).add(median(this::measureAddVariable));
+            times.get(ADD_METHOD).add(median(this::measureAddMethod));
+            times.get(DELETE).add(median(this::measureDelete));
+            times.get(RENAME).add(median(this::measureRename));
+        }
+
+        System.out.println(formatTimes(times));
+
+        // Compare each size with the one before it.
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, List<Long>> entry : times.entrySet()) {
+            String operation = entry.getKey();
+            double exponent = getDouble(PROPERTY_PREFIX + "exponent." + operation, getDouble(PROPERTY_PREFIX + "exponent", 1.0));
+            List<Long> operationTimes = entry.getValue();
+            for (int i = 1; i < sizes.size(); i++) {
+                double growth = Math.pow((double) sizes.get(i) / sizes.get(i - 1), exponent);
+                double allowed = Math.max(operationTimes.get(i - 1), floorNanos) * growth * slack;
+                if (operationTimes.get(i) > allowed) {
+                    failures.add(String.format("%s took %.3f ms at size %d, more than the %.3f ms allowed by n^%s after %.3f ms at size %d",
+                            operation, millis(operationTimes.get(i)), sizes.get(i), millis((long) allowed), exponent,
+                            millis(operationTimes.get(i - 1)), sizes.get(i - 1)));
+                }
+            }
+        }
+        assertTrue(String.join("\n", failures), failures.isEmpty());
+    }
+
+
+    private long measureBuild() {
+        OutlineModelService service = OutlineModelService.getInstance(getProject());
+        service.clear();
+
+        long start = System.nanoTime();
+        OutlineModelService.OutlineModel model = service.getModel(currentClass.getContainingFile().getVirtualFile());
+        long time = System.nanoTime() - start;
+
+        assertNotNull(model);
+        return time;
+    }
+
+
+    private long measureAddVariable() {
+        long start = System.nanoTime();
+        PsiField variable = AddVariableHandler.insertVariable(getProject(), currentClass, "private int addedVariable = 0;");
+        long time = System.nanoTime() - start;
+
+        Utilities.deleteMember(getProject(), variable);
+        return time;
+    }
+
+
+    private long measureAddMethod() {
+        long start = System.nanoTime();
+        PsiMethod method = AddMethodHandler.insertMethod(getProject(), currentClass, "public void addedMethod() {\n}");
+        long time = System.nanoTime() - start;
+
+        Utilities.deleteMember(getProject(), method);
+        return time;
+    }
+
+
+    private long measureDelete() {
+        PsiMethod method = AddMethodHandler.insertMethod(getProject(), currentClass, "public void deletedMethod() {\n}");
+
+        long start = System.nanoTime();
+        Utilities.deleteMember(getProject(), method);
+        return System.nanoTime() - start;
+    }
+
+
+    /**
+     * Rename the first field, which every tenth method uses, the way a row edit does. Its references are searched for
+     * in the background, so the time includes the wait for the rename to be done.
+     */
+    private long measureRename() {
+        PsiField field = currentClass.getFields()[0];
+        String oldName = field.getName();
+        String newName = "renamedField" + renameCount++;
+        AtomicBoolean renamed = new AtomicBoolean();
+
+        long start = System.nanoTime();
+        RowEditTransaction transaction = new RowEditTransaction(getProject(), field, oldName);
+        transaction.setName(oldName, newName);
+        transaction.commit(() -> renamed.set(true));
+        waitUntil(renamed::get);
+        long time = System.nanoTime() - start;
+
+        assertEquals(newName, field.getName());
+        return time;
+    }
+
+
+    /**
+     * Measure an operation once to warm up and then as often as configured.
+     * @return The median time in nanoseconds.
+     */
+    private long median(TimedOperation operation) {
+        operation.measure();
+        long[] operationTimes = new long[repeats];
+        for (int i = 0; i < repeats; i++) {
+            operationTimes[i] = operation.measure();
+        }
+        Arrays.sort(operationTimes);
+        return operationTimes[repeats / 2];
+    }
+
+
+    /**
+     * Dispatch the events of the event queue until the condition holds, since background tasks finish on the event
+     * dispatch thread the test runs on.
+     */
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + RENAME_TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue("The rename wasn't done in time", System.currentTimeMillis() < deadline);
+            PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted while waiting for the rename");
+            }
+        }
+    }
+
+
+    /**
+     * A class with a number of fields and methods, one inner class and one enum for every ten of them, and an inner
+     * class with its own enum. Every method uses its own field, and every tenth method also uses the first field.
+     */
+    static String syntheticClassText(int size) {
+        StringBuilder text = new StringBuilder();
+        text.append("public class Synthetic").append(size).append(" {\n");
+        for (int i = 0; i < size; i++) {
+            text.append("    private int field").append(i).append(" = ").append(i).append(";\n");
+        }
+        for (int i = 0; i < size; i++) {
+            text.append("\n    public int method").append(i).append("(int value) {\n");
+            text.append("        return field").append(i).append(i % 10 == 0 ? " + field0" : "").append(" + value;\n");
+            text.append("    }\n");
+        }
+        for (int i = 0; i < Math.max(1, size / 10); i++) {
+            text.append("\n    static class Inner").append(i).append(" {\n");
+            text.append("        private int value;\n");
+            text.append("\n        enum Kind { FIRST, SECOND }\n");
+            text.append("    }\n");
+            text.append("\n    enum Mode").append(i).append(" { ON, OFF }\n");
+        }
+        text.append("}\n");
+        return text.toString();
+    }
+
+
+    private String formatTimes(Map<String, List<Long>> times) {
+        StringBuilder table = new StringBuilder(String.format("%-12s", "size"));
+        for (int size : sizes) {
+            table.append(String.format("%12d", size));
+        }
+        for (Map.Entry<String, List<Long>> entry : times.entrySet()) {
+            table.append(String.format("%n%-12s", entry.getKey()));
+            for (long time : entry.getValue()) {
+                table.append(String.format("%9.3f ms", millis(time)));
+            }
+        }
+        return table.toString();
+    }
+
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+
+    private static List<Integer> getSizes() {
+        String sizes = System.getProperty(PROPERTY_PREFIX + "sizes", "10,100,1000,10000");
+        return Arrays.stream(sizes.split(",")).map(String::trim).map(Integer::valueOf).sorted().collect(Collectors.toList());
+    }
+
+
+    private static double getDouble(String property, double defaultValue) {
+        String value = System.getProperty(property);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+
+    private interface TimedOperation {
+
+        /**
+         * @return The time the operation took in nanoseconds.
+         */
+        long measure();
+    }
+}